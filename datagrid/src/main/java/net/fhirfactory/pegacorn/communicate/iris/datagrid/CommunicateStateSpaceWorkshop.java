@@ -21,17 +21,23 @@
  */
 package net.fhirfactory.pegacorn.communicate.iris.datagrid;
 
+import net.fhirfactory.pegacorn.communicate.iris.datagrid.entityplane.cache.CommunicateCacheSnapshotManager;
 import net.fhirfactory.pegacorn.core.model.componentid.PegacornSystemComponentTypeTypeEnum;
 import net.fhirfactory.pegacorn.workshops.base.Workshop;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.inject.Inject;
+
 public class CommunicateStateSpaceWorkshop extends Workshop {
     private static final Logger LOG = LoggerFactory.getLogger(CommunicateStateSpaceWorkshop.class);
 
     private static String WORKSHOP_NAME = "CommunicateStateSpace";
     private static String WORKSHOP_VERSION = "1.0.0";
 
+    @Inject
+    private CommunicateCacheSnapshotManager cacheSnapshotManager;
+
     @Override
     protected Logger specifyLogger() {
         return (LOG);
@@ -54,6 +60,6 @@ public class CommunicateStateSpaceWorkshop extends Workshop {
 
     @Override
     protected void invokePostConstructInitialisation() {
-
+        cacheSnapshotManager.initialiseService();
     }
 }
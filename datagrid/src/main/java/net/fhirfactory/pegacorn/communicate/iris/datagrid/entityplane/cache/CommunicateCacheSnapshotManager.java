@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2021 Mark Hunter
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.fhirfactory.pegacorn.communicate.iris.datagrid.entityplane.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import net.fhirfactory.pegacorn.communicate.iris.datagrid.entityplane.cache.common.CommunicateResourceCacheBase;
+import net.fhirfactory.pegacorn.communicate.iris.datagrid.entityplane.cache.common.CommunicateResourceCacheSnapshotFile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.enterprise.concurrent.ManagedScheduledExecutorService;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.inject.Instance;
+import javax.inject.Inject;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodically snapshots every entity-plane cache (each CommunicateResourceCacheBase bean) to its own file
+ * and, at start-up, warm-starts the caches from those files. Anything that changed after a cache's
+ * snapshot instant (see getRestoredSnapshotInstant()) must still be caught-up via the normal workflow.
+ *
+ * The snapshot directory is read from the COMMUNICATE_CACHE_SNAPSHOT_DIRECTORY environment variable (or
+ * system property) and should be a persistent volume - if it is not set, snapshots are disabled.
+ */
+@ApplicationScoped
+public class CommunicateCacheSnapshotManager {
+    private static final Logger LOG = LoggerFactory.getLogger(CommunicateCacheSnapshotManager.class);
+
+    private static final String SNAPSHOT_FILE_SUFFIX = ".snapshot";
+    static final String SNAPSHOT_DIRECTORY_PROPERTY = "COMMUNICATE_CACHE_SNAPSHOT_DIRECTORY";
+    static final long SNAPSHOT_INITIAL_DELAY = 60000; // Delay (in Milliseconds) before the first snapshot is taken
+    static final long SNAPSHOT_DELAY = 300000; // Delay (in Milliseconds) between snapshots
+
+    private boolean initialised;
+    private ObjectMapper jsonMapper;
+    private Instant restoredSnapshotInstant;
+    private Path snapshotDirectory;
+
+    @Inject
+    private Instance<CommunicateResourceCacheBase> entityPlaneCaches;
+
+    @Resource
+    ManagedScheduledExecutorService scheduler;
+
+    public CommunicateCacheSnapshotManager(){
+        this.initialised = false;
+        this.restoredSnapshotInstant = null;
+        this.snapshotDirectory = null;
+        this.jsonMapper = new ObjectMapper();
+        this.jsonMapper.registerModule(new JavaTimeModule());
+        this.jsonMapper.configure(SerializationFeature.INDENT_OUTPUT, false);
+    }
+
+    protected Logger getLogger(){
+        return(LOG);
+    }
+
+    /**
+     * @return The directory the snapshot files are written to (and restored from), or null if none is
+     * configured. This must outlive the instance (i.e. a persistent volume), otherwise a restarted instance
+     * finds nothing to warm-start from.
+     */
+    protected Path specifySnapshotDirectory(){
+        String configuredDirectory = System.getenv(SNAPSHOT_DIRECTORY_PROPERTY);
+        if(configuredDirectory == null || configuredDirectory.trim().isEmpty()){
+            configuredDirectory = System.getProperty(SNAPSHOT_DIRECTORY_PROPERTY);
+        }
+        if(configuredDirectory == null || configuredDirectory.trim().isEmpty()){
+            return(null);
+        }
+        return(Paths.get(configuredDirectory.trim()));
+    }
+
+    @PostConstruct
+    protected void initialise(){
+        if(!initialised){
+            this.snapshotDirectory = specifySnapshotDirectory();
+            if(this.snapshotDirectory == null){
+                getLogger().warn(".initialise(): No snapshot directory configured ({} is not set), cache snapshots are disabled and the caches will start cold", SNAPSHOT_DIRECTORY_PROPERTY);
+            } else {
+                getLogger().info(".initialise(): Cache snapshot directory->{}", this.snapshotDirectory);
+                restoreAllCaches();
+                this.scheduler.scheduleWithFixedDelay(this::snapshotAllCaches, SNAPSHOT_INITIAL_DELAY, SNAPSHOT_DELAY, TimeUnit.MILLISECONDS);
+            }
+            initialised = true;
+        }
+    }
+
+    public boolean isSnapshotEnabled(){
+        return(this.snapshotDirectory != null);
+    }
+
+    public void initialiseService(){
+        initialise();
+    }
+
+    //
+    // Snapshot / Restore
+    //
+
+    public void snapshotAllCaches(){
+        getLogger().debug(".snapshotAllCaches(): Entry");
+        if(!isSnapshotEnabled()){
+            getLogger().debug(".snapshotAllCaches(): Exit, no snapshot directory configured");
+            return;
+        }
+        for(CommunicateResourceCacheBase currentCache: entityPlaneCaches){
+            try {
+                int entryCount = currentCache.writeSnapshot(getSnapshotFile(currentCache));
+                getLogger().trace(".snapshotAllCaches(): cache->{}, entryCount->{}", currentCache.getSnapshotName(), entryCount);
+            } catch(IOException | RuntimeException snapshotException){
+                // one failing cache should not stop the others (nor the scheduled task)
+                getLogger().warn(".snapshotAllCaches(): Could not snapshot cache {}: {}", currentCache.getSnapshotName(), snapshotException.toString());
+            }
+        }
+        getLogger().debug(".snapshotAllCaches(): Exit");
+    }
+
+    public void restoreAllCaches(){
+        getLogger().debug(".restoreAllCaches(): Entry");
+        if(!isSnapshotEnabled()){
+            getLogger().debug(".restoreAllCaches(): Exit, no snapshot directory configured");
+            return;
+        }
+        Instant oldestSnapshotInstant = null;
+        for(CommunicateResourceCacheBase currentCache: entityPlaneCaches){
+            try {
+                int restoredCount = currentCache.restoreSnapshot(getSnapshotFile(currentCache));
+                Instant cacheSnapshotInstant = currentCache.getRestoredSnapshotInstant();
+                if(cacheSnapshotInstant != null && (oldestSnapshotInstant == null || cacheSnapshotInstant.isBefore(oldestSnapshotInstant))){
+                    oldestSnapshotInstant = cacheSnapshotInstant;
+                }
+                getLogger().info(".restoreAllCaches(): cache->{}, restoredCount->{}, snapshotInstant->{}", currentCache.getSnapshotName(), restoredCount, cacheSnapshotInstant);
+            } catch(IOException | RuntimeException restoreException){
+                getLogger().warn(".restoreAllCaches(): Could not restore cache {}: {}", currentCache.getSnapshotName(), restoreException.toString());
+            }
+        }
+        this.restoredSnapshotInstant = oldestSnapshotInstant;
+        getLogger().debug(".restoreAllCaches(): Exit, restoredSnapshotInstant->{}", restoredSnapshotInstant);
+    }
+
+    /**
+     * @return The oldest snapshot instant across all the restored caches - i.e. the point from which an
+     * incremental catch-up must start (null if nothing was restored)
+     */
+    public Instant getRestoredSnapshotInstant(){
+        return(restoredSnapshotInstant);
+    }
+
+    private CommunicateResourceCacheSnapshotFile getSnapshotFile(CommunicateResourceCacheBase cache){
+        Path snapshotPath = this.snapshotDirectory.resolve(cache.getSnapshotName() + SNAPSHOT_FILE_SUFFIX);
+        return(new CommunicateResourceCacheSnapshotFile(snapshotPath, jsonMapper));
+    }
+}
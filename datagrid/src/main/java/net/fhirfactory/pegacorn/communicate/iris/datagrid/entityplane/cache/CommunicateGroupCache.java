@@ -34,6 +34,11 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.enterprise.context.ApplicationScoped;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 @ApplicationScoped
 public class CommunicateGroupCache extends CommunicateResourceCacheBase {
@@ -44,8 +49,14 @@ public class CommunicateGroupCache extends CommunicateResourceCacheBase {
         return(LOG);
     }
 
+    // (lower-case) group simplifiedID --> member set, and member --> (lower-case group simplifiedID) set
+    private ConcurrentHashMap<String, Set<String>> groupMembershipMap;
+    private ConcurrentHashMap<String, Set<String>> member2GroupMap;
+
     public CommunicateGroupCache(){
         super();
+        this.groupMembershipMap = new ConcurrentHashMap<>();
+        this.member2GroupMap = new ConcurrentHashMap<>();
     }
 
     public ESRMethodOutcome addGroup(GroupESR groupESR){
@@ -54,7 +65,10 @@ public class CommunicateGroupCache extends CommunicateResourceCacheBase {
     }
 
     public GroupESR getGroup(String groupPrimaryKey){
-        ExtremelySimplifiedResource foundEntry = this.getCacheEntry(groupPrimaryKey);
+        if(groupPrimaryKey == null){
+            return(null);
+        }
+        ExtremelySimplifiedResource foundEntry = this.getCacheEntry(groupPrimaryKey.toLowerCase());
         GroupESR foundGroupEntry = (GroupESR) foundEntry;
         return(foundGroupEntry);
     }
@@ -67,19 +81,36 @@ public class CommunicateGroupCache extends CommunicateResourceCacheBase {
             outcome.setStatusReason("Group does not exist");
             return(outcome);
         }
-        if(foundGroup.getGroupMembership().contains(memberPrimaryKey)){
+        if(!addMembership(foundGroup, memberPrimaryKey)){
             ESRMethodOutcome outcome = new ESRMethodOutcome();
             outcome.setStatus(ESRMethodOutcomeEnum.UPDATE_ENTRY_INVALID);
             return(outcome);
-
-        } else {
-            foundGroup.getGroupMembership().add(memberPrimaryKey);
         }
+        ESRMethodOutcome outcome = new ESRMethodOutcome();
+        outcome.setStatus(ESRMethodOutcomeEnum.UPDATE_ENTRY_SUCCESSFUL);
+        outcome.setId(foundGroup.getSimplifiedID());
+        outcome.setEntry(foundGroup);
+        return (outcome);
+    }
+
+    public ESRMethodOutcome addMembers(String groupPrimaryKey, Collection<String> memberPrimaryKeys){
+        GroupESR foundGroup = getGroup(groupPrimaryKey);
+        if(foundGroup == null || memberPrimaryKeys == null){
             ESRMethodOutcome outcome = new ESRMethodOutcome();
-            outcome.setStatus(ESRMethodOutcomeEnum.UPDATE_ENTRY_SUCCESSFUL);
-            outcome.setId(foundGroup.getSimplifiedID());
-            outcome.setEntry(foundGroup);
-            return (outcome);
+            outcome.setStatus(ESRMethodOutcomeEnum.UPDATE_ENTRY_INVALID);
+            outcome.setStatusReason("Group does not exist");
+            return(outcome);
+        }
+        for(String memberPrimaryKey: memberPrimaryKeys){
+            if(memberPrimaryKey != null){
+                addMembership(foundGroup, memberPrimaryKey);
+            }
+        }
+        ESRMethodOutcome outcome = new ESRMethodOutcome();
+        outcome.setStatus(ESRMethodOutcomeEnum.UPDATE_ENTRY_SUCCESSFUL);
+        outcome.setId(foundGroup.getSimplifiedID());
+        outcome.setEntry(foundGroup);
+        return(outcome);
     }
 
     public ESRMethodOutcome removeMember(String groupPrimaryKey, String memberPrimaryKey){
@@ -90,8 +121,26 @@ public class CommunicateGroupCache extends CommunicateResourceCacheBase {
             outcome.setStatusReason("Group does not exist");
             return(outcome);
         }
-        if(foundGroup.getGroupMembership().contains(memberPrimaryKey)){
-            foundGroup.getGroupMembership().remove(memberPrimaryKey);
+        removeMembership(foundGroup, memberPrimaryKey);
+        ESRMethodOutcome outcome = new ESRMethodOutcome();
+        outcome.setStatus(ESRMethodOutcomeEnum.UPDATE_ENTRY_SUCCESSFUL);
+        outcome.setId(foundGroup.getSimplifiedID());
+        outcome.setEntry(foundGroup);
+        return(outcome);
+    }
+
+    public ESRMethodOutcome removeMembers(String groupPrimaryKey, Collection<String> memberPrimaryKeys){
+        GroupESR foundGroup = getGroup(groupPrimaryKey);
+        if(foundGroup == null || memberPrimaryKeys == null){
+            ESRMethodOutcome outcome = new ESRMethodOutcome();
+            outcome.setStatus(ESRMethodOutcomeEnum.UPDATE_ENTRY_INVALID);
+            outcome.setStatusReason("Group does not exist");
+            return(outcome);
+        }
+        for(String memberPrimaryKey: memberPrimaryKeys){
+            if(memberPrimaryKey != null){
+                removeMembership(foundGroup, memberPrimaryKey);
+            }
         }
         ESRMethodOutcome outcome = new ESRMethodOutcome();
         outcome.setStatus(ESRMethodOutcomeEnum.UPDATE_ENTRY_SUCCESSFUL);
@@ -100,6 +149,140 @@ public class CommunicateGroupCache extends CommunicateResourceCacheBase {
         return(outcome);
     }
 
+    public boolean isMember(String groupPrimaryKey, String memberPrimaryKey){
+        if(groupPrimaryKey == null || memberPrimaryKey == null){
+            return(false);
+        }
+        Set<String> members = groupMembershipMap.get(groupPrimaryKey.toLowerCase());
+        if(members == null){
+            return(false);
+        }
+        return(members.contains(memberPrimaryKey));
+    }
+
+    /**
+     * Returns the (lower-case simplifiedID of the) groups the given member belongs to.
+     *
+     * @param memberPrimaryKey The member
+     * @return An unmodifiable (live) view of the member's groups - empty if the member is in no group
+     */
+    public Set<String> getGroupsForMember(String memberPrimaryKey){
+        if(memberPrimaryKey == null){
+            return(Collections.emptySet());
+        }
+        Set<String> groups = member2GroupMap.get(memberPrimaryKey);
+        if(groups == null){
+            return(Collections.emptySet());
+        }
+        return(Collections.unmodifiableSet(groups));
+    }
+
+    //
+    // Membership Index Maintenance
+    //
+
+    /**
+     * Adds the member to the group's member set, the reverse index and the GroupESR's own membership list.
+     * All three are updated within the one atomic compute on the group's key, so concurrent adds/removes of
+     * the same member to/from the same group are applied to all three in the same order.
+     *
+     * @return true if the member was not already in the group
+     */
+    private boolean addMembership(GroupESR group, String memberPrimaryKey){
+        String groupKey = group.getSimplifiedID().toLowerCase();
+        boolean[] added = {false};
+        groupMembershipMap.compute(groupKey, (key, members) -> {
+            if(members == null){
+                members = ConcurrentHashMap.newKeySet();
+            }
+            if(members.add(memberPrimaryKey)){
+                addReverseMembership(memberPrimaryKey, groupKey);
+                List<String> groupMembership = group.getGroupMembership();
+                synchronized (groupMembership){
+                    groupMembership.add(memberPrimaryKey);
+                }
+                added[0] = true;
+            }
+            return(members);
+        });
+        return(added[0]);
+    }
+
+    /**
+     * The inverse of addMembership(), again updating all three within the one atomic compute on the group's key.
+     *
+     * @return true if the member was in the group
+     */
+    private boolean removeMembership(GroupESR group, String memberPrimaryKey){
+        String groupKey = group.getSimplifiedID().toLowerCase();
+        boolean[] removed = {false};
+        groupMembershipMap.computeIfPresent(groupKey, (key, members) -> {
+            if(members.remove(memberPrimaryKey)){
+                removeReverseMembership(memberPrimaryKey, groupKey);
+                List<String> groupMembership = group.getGroupMembership();
+                synchronized (groupMembership){
+                    groupMembership.remove(memberPrimaryKey);
+                }
+                removed[0] = true;
+            }
+            return(members);
+        });
+        return(removed[0]);
+    }
+
+    private void addReverseMembership(String memberPrimaryKey, String groupKey){
+        member2GroupMap.compute(memberPrimaryKey, (key, groups) -> {
+            if(groups == null){
+                groups = ConcurrentHashMap.newKeySet();
+            }
+            groups.add(groupKey);
+            return(groups);
+        });
+    }
+
+    private void removeReverseMembership(String memberPrimaryKey, String groupKey){
+        member2GroupMap.computeIfPresent(memberPrimaryKey, (key, groups) -> {
+            groups.remove(groupKey);
+            if(groups.isEmpty()){
+                return(null);
+            }
+            return(groups);
+        });
+    }
+
+    @Override
+    protected void addToSecondaryIndexes(ExtremelySimplifiedResource entry){
+        GroupESR group = (GroupESR) entry;
+        String groupKey = group.getSimplifiedID().toLowerCase();
+        groupMembershipMap.compute(groupKey, (key, members) -> {
+            if(members == null){
+                members = ConcurrentHashMap.newKeySet();
+            }
+            List<String> groupMembership = group.getGroupMembership();
+            if(groupMembership != null){
+                synchronized (groupMembership){
+                    for(String memberPrimaryKey: groupMembership){
+                        if(memberPrimaryKey != null && members.add(memberPrimaryKey)){
+                            addReverseMembership(memberPrimaryKey, groupKey);
+                        }
+                    }
+                }
+            }
+            return(members);
+        });
+    }
+
+    @Override
+    protected void removeFromSecondaryIndexes(ExtremelySimplifiedResource entry){
+        String groupKey = entry.getSimplifiedID().toLowerCase();
+        groupMembershipMap.computeIfPresent(groupKey, (key, members) -> {
+            for(String memberPrimaryKey: members){
+                removeReverseMembership(memberPrimaryKey, groupKey);
+            }
+            return(null);
+        });
+    }
+
     //
     // Search Services
     //
@@ -21,6 +21,7 @@
  */
 package net.fhirfactory.pegacorn.communicate.iris.datagrid.entityplane.cache;
 
+import net.fhirfactory.pegacorn.communicate.iris.datagrid.entityplane.cache.common.CommunicateResourceAttributeIndex;
 import net.fhirfactory.pegacorn.communicate.iris.datagrid.entityplane.cache.common.CommunicateResourceCacheBase;
 import net.fhirfactory.pegacorn.core.model.ui.resources.simple.PractitionerRoleESR;
 import net.fhirfactory.pegacorn.core.model.ui.resources.simple.common.ExtremelySimplifiedResource;
@@ -29,6 +30,7 @@ import net.fhirfactory.pegacorn.core.model.ui.resources.simple.valuesets.Identif
 import net.fhirfactory.pegacorn.core.model.ui.resources.simple.search.PractitionerRoleSearchResult;
 import net.fhirfactory.pegacorn.core.model.ui.resources.simple.search.common.ESRSearchResult;
 import net.fhirfactory.pegacorn.core.model.ui.transactions.ESRMethodOutcome;
+import net.fhirfactory.pegacorn.core.model.ui.transactions.ESRMethodOutcomeEnum;
 import net.fhirfactory.pegacorn.core.model.ui.transactions.exceptions.ResourceInvalidSearchException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -39,8 +41,17 @@ import javax.enterprise.context.ApplicationScoped;
 public class CommunicatePractitionerRoleCache extends CommunicateResourceCacheBase {
     private static final Logger LOG = LoggerFactory.getLogger(CommunicatePractitionerRoleCache.class);
 
+    private CommunicateResourceAttributeIndex primaryOrganizationIndex;
+    private CommunicateResourceAttributeIndex primaryLocationIndex;
+    private CommunicateResourceAttributeIndex primaryRoleCategoryIndex;
+    private CommunicateResourceAttributeIndex primaryRoleIndex;
+
     public CommunicatePractitionerRoleCache(){
         super();
+        this.primaryOrganizationIndex = new CommunicateResourceAttributeIndex();
+        this.primaryLocationIndex = new CommunicateResourceAttributeIndex();
+        this.primaryRoleCategoryIndex = new CommunicateResourceAttributeIndex();
+        this.primaryRoleIndex = new CommunicateResourceAttributeIndex();
     }
 
     @Override
@@ -59,6 +70,63 @@ public class CommunicatePractitionerRoleCache extends CommunicateResourceCacheBa
         return(foundPractitionerDirectoryEntry);
     }
 
+    /**
+     * Re-indexes a PractitionerRole whose organization/location/role-category/role has been changed. If the
+     * supplied entry is a different instance to the one held in the cache, it replaces the cached instance.
+     *
+     * @param practitionerRole The updated PractitionerRoleESR
+     * @return An ESRMethodOutcome describing the result of the update
+     */
+    public ESRMethodOutcome updatePractitionerRole(PractitionerRoleESR practitionerRole){
+        LOG.debug(".updatePractitionerRole(): Entry");
+        ESRMethodOutcome outcome = new ESRMethodOutcome();
+        if(practitionerRole == null || practitionerRole.getSimplifiedID() == null){
+            outcome.setStatus(ESRMethodOutcomeEnum.UPDATE_ENTRY_INVALID);
+            outcome.setStatusReason("The entry (or its simplifiedID) is NULL");
+            LOG.debug(".updatePractitionerRole(): Exit, entry is invalid");
+            return(outcome);
+        }
+        ExtremelySimplifiedResource existingEntry = getCacheEntry(practitionerRole.getSimplifiedID().toLowerCase());
+        if(existingEntry == null){
+            outcome.setStatus(ESRMethodOutcomeEnum.UPDATE_ENTRY_INVALID);
+            outcome.setStatusReason("PractitionerRole does not exist");
+            LOG.debug(".updatePractitionerRole(): Exit, entry does not exist");
+            return(outcome);
+        }
+        if(existingEntry == practitionerRole){
+            refreshSecondaryIndexes(practitionerRole);
+        } else {
+            removeCacheEntry(practitionerRole.getSimplifiedID());
+            addCacheEntry(practitionerRole);
+        }
+        outcome.setStatus(ESRMethodOutcomeEnum.UPDATE_ENTRY_SUCCESSFUL);
+        outcome.setId(practitionerRole.getSimplifiedID());
+        outcome.setEntry(practitionerRole);
+        LOG.debug(".updatePractitionerRole(): Exit");
+        return(outcome);
+    }
+
+    //
+    // Secondary Indexes
+    //
+
+    @Override
+    protected void addToSecondaryIndexes(ExtremelySimplifiedResource entry){
+        PractitionerRoleESR practitionerRole = (PractitionerRoleESR) entry;
+        primaryOrganizationIndex.addEntry(practitionerRole, practitionerRole.getPrimaryOrganizationID());
+        primaryLocationIndex.addEntry(practitionerRole, practitionerRole.getPrimaryLocationID());
+        primaryRoleCategoryIndex.addEntry(practitionerRole, practitionerRole.getPrimaryRoleCategoryID());
+        primaryRoleIndex.addEntry(practitionerRole, practitionerRole.getPrimaryRoleID());
+    }
+
+    @Override
+    protected void removeFromSecondaryIndexes(ExtremelySimplifiedResource entry){
+        primaryOrganizationIndex.removeEntry(entry.getSimplifiedID());
+        primaryLocationIndex.removeEntry(entry.getSimplifiedID());
+        primaryRoleCategoryIndex.removeEntry(entry.getSimplifiedID());
+        primaryRoleIndex.removeEntry(entry.getSimplifiedID());
+    }
+
     //
     // Search Functions
     //
@@ -166,63 +234,39 @@ public class CommunicatePractitionerRoleCache extends CommunicateResourceCacheBa
     public ESRSearchResult searchCacheViaOrganization(String organizationName){
         LOG.debug(".searchCacheViaOrganization(): Entry");
         ESRSearchResult result = instatiateNewESRSearchResult();
-        String organisationNameAsLowerCase = organizationName.toLowerCase();
         if(this.getSimplifiedID2ESRMap().isEmpty()){
             LOG.debug(".searchCacheViaOrganization(): Exit, cache is empty, so returning empty list!");
             return(result);
         }
-        for(ExtremelySimplifiedResource currentResource: this.getSimplifiedID2ESRMap().values()){
-            PractitionerRoleESR currentPractitionerRole = (PractitionerRoleESR) currentResource;
-            if(currentPractitionerRole.getPrimaryOrganizationID().toLowerCase().startsWith(organisationNameAsLowerCase)){
-                result.getSearchResultList().add(currentPractitionerRole);
-            }
-        }
+        result.getSearchResultList().addAll(primaryOrganizationIndex.searchUsingPrefix(organizationName));
         LOG.debug(".searchCacheViaOrganization(): Exit");
         return(result);
     }
 
     public ESRSearchResult searchCacheViaLocation(String locationName){
         ESRSearchResult result = instatiateNewESRSearchResult();
-        String locationNameAsLowerCase = locationName.toLowerCase();
         if(this.getSimplifiedID2ESRMap().isEmpty()){
             return(result);
         }
-        for(ExtremelySimplifiedResource currentResource: this.getSimplifiedID2ESRMap().values()){
-            PractitionerRoleESR currentPractitionerRole = (PractitionerRoleESR) currentResource;
-            if(currentPractitionerRole.getPrimaryLocationID().toLowerCase().startsWith(locationNameAsLowerCase)){
-                result.getSearchResultList().add(currentPractitionerRole);
-            }
-        }
+        result.getSearchResultList().addAll(primaryLocationIndex.searchUsingPrefix(locationName));
         return(result);
     }
 
     public ESRSearchResult searchCacheViaRoleCategory(String roleCategoryName){
         ESRSearchResult result = instatiateNewESRSearchResult();
-        String roleCategoryNameAsLowerCase = roleCategoryName.toLowerCase();
         if(this.getSimplifiedID2ESRMap().isEmpty()){
             return(result);
         }
-        for(ExtremelySimplifiedResource currentResource: this.getSimplifiedID2ESRMap().values()){
-            PractitionerRoleESR currentPractitionerRole = (PractitionerRoleESR) currentResource;
-            if(currentPractitionerRole.getPrimaryRoleCategoryID().toLowerCase().startsWith(roleCategoryNameAsLowerCase)){
-                result.getSearchResultList().add(currentPractitionerRole);
-            }
-        }
+        result.getSearchResultList().addAll(primaryRoleCategoryIndex.searchUsingPrefix(roleCategoryName));
         return(result);
     }
 
     public ESRSearchResult searchCacheViaRole(String roleName){
         ESRSearchResult result = instatiateNewESRSearchResult();
-        String roleNameAsLowerCase = roleName.toLowerCase();
         if(this.getSimplifiedID2ESRMap().isEmpty()){
             return(result);
         }
-        for(ExtremelySimplifiedResource currentResource: this.getSimplifiedID2ESRMap().values()){
-            PractitionerRoleESR currentPractitionerRole = (PractitionerRoleESR) currentResource;
-            if(currentPractitionerRole.getPrimaryRoleID().toLowerCase().startsWith(roleNameAsLowerCase)){
-                result.getSearchResultList().add(currentPractitionerRole);
-            }
-        }
+        result.getSearchResultList().addAll(primaryRoleIndex.searchUsingPrefix(roleName));
         return(result);
     }
 }
@@ -23,15 +23,18 @@ package net.fhirfactory.pegacorn.communicate.iris.datagrid.entityplane.cache;
 
 import net.fhirfactory.pegacorn.communicate.iris.datagrid.entityplane.cache.common.CommunicateResourceCacheBase;
 import net.fhirfactory.pegacorn.core.model.ui.resources.simple.CommunicateRoomESR;
+import net.fhirfactory.pegacorn.core.model.ui.resources.simple.common.ExtremelySimplifiedResource;
 import net.fhirfactory.pegacorn.core.model.ui.resources.simple.valuesets.IdentifierESDTUseEnum;
 import net.fhirfactory.pegacorn.core.model.ui.resources.simple.search.MatrixRoomSearchResult;
 import net.fhirfactory.pegacorn.core.model.ui.resources.simple.search.common.ESRSearchResult;
+import net.fhirfactory.pegacorn.core.model.ui.transactions.ESRMethodOutcome;
+import net.fhirfactory.pegacorn.core.model.ui.transactions.ESRMethodOutcomeEnum;
 import net.fhirfactory.pegacorn.core.model.ui.transactions.exceptions.ResourceInvalidSearchException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.enterprise.context.ApplicationScoped;
-import java.util.Enumeration;
+import java.util.concurrent.ConcurrentHashMap;
 
 @ApplicationScoped
 public class CommunicateRoomCache extends CommunicateResourceCacheBase {
@@ -42,8 +45,88 @@ public class CommunicateRoomCache extends CommunicateResourceCacheBase {
         return(LOG);
     }
 
+    private ConcurrentHashMap<String, CommunicateRoomESR> canonicalAlias2RoomMap;
+    private ConcurrentHashMap<String, String> simplifiedID2CanonicalAliasMap;
+
     public CommunicateRoomCache(){
         super();
+        this.canonicalAlias2RoomMap = new ConcurrentHashMap<>();
+        this.simplifiedID2CanonicalAliasMap = new ConcurrentHashMap<>();
+    }
+
+    //
+    // Create / Update
+    //
+
+    /**
+     * Adds the room to the cache or, if a room with the same simplifiedID (or, failing that, the same
+     * canonical alias) is already present, updates that entry's displayName and canonicalAlias in-place (and
+     * re-indexes it under them).
+     * Both lookups are hash-based, so the cost is independent of the number of rooms in the cache.
+     *
+     * @param room The room to be added or updated
+     * @return An ESRMethodOutcome describing the create/update
+     */
+    public ESRMethodOutcome addOrUpdateRoom(CommunicateRoomESR room){
+        getLogger().debug(".addOrUpdateRoom(): Entry, room->{}", room);
+        if(room == null){
+            ESRMethodOutcome outcome = new ESRMethodOutcome();
+            outcome.setStatus(ESRMethodOutcomeEnum.CREATE_ENTRY_INVALID);
+            outcome.setStatusReason("The entry is NULL");
+            getLogger().debug(".addOrUpdateRoom(): Exit, room is null");
+            return(outcome);
+        }
+        CommunicateRoomESR existingRoom = null;
+        if(room.getSimplifiedID() != null){
+            existingRoom = (CommunicateRoomESR) getCacheEntry(room.getSimplifiedID().toLowerCase());
+        }
+        if(existingRoom == null){
+            existingRoom = getRoomUsingCanonicalAlias(room.getCanonicalAlias());
+        }
+        if(existingRoom == null){
+            ESRMethodOutcome outcome = addCacheEntry(room);
+            getLogger().debug(".addOrUpdateRoom(): Exit, created (inserted) room");
+            return(outcome);
+        }
+        updateCacheEntryDisplayName(existingRoom, room.getDisplayName());
+        existingRoom.setCanonicalAlias(room.getCanonicalAlias());
+        refreshSecondaryIndexes(existingRoom);
+        ESRMethodOutcome outcome = new ESRMethodOutcome();
+        outcome.setStatus(ESRMethodOutcomeEnum.UPDATE_ENTRY_SUCCESSFUL);
+        outcome.setId(existingRoom.getSimplifiedID());
+        outcome.setEntry(existingRoom);
+        getLogger().debug(".addOrUpdateRoom(): Exit, updated room");
+        return(outcome);
+    }
+
+    public CommunicateRoomESR getRoomUsingCanonicalAlias(String canonicalAlias){
+        if(canonicalAlias == null){
+            return(null);
+        }
+        return(canonicalAlias2RoomMap.get(canonicalAlias.toLowerCase()));
+    }
+
+    //
+    // Secondary Indexes
+    //
+
+    @Override
+    protected void addToSecondaryIndexes(ExtremelySimplifiedResource entry){
+        CommunicateRoomESR room = (CommunicateRoomESR) entry;
+        if(room.getCanonicalAlias() == null){
+            return;
+        }
+        String canonicalAliasKey = room.getCanonicalAlias().toLowerCase();
+        canonicalAlias2RoomMap.put(canonicalAliasKey, room);
+        simplifiedID2CanonicalAliasMap.put(room.getSimplifiedID().toLowerCase(), canonicalAliasKey);
+    }
+
+    @Override
+    protected void removeFromSecondaryIndexes(ExtremelySimplifiedResource entry){
+        String canonicalAliasKey = simplifiedID2CanonicalAliasMap.remove(entry.getSimplifiedID().toLowerCase());
+        if(canonicalAliasKey != null){
+            canonicalAlias2RoomMap.remove(canonicalAliasKey, entry);
+        }
     }
 
     //
@@ -64,7 +147,7 @@ public class CommunicateRoomCache extends CommunicateResourceCacheBase {
             case "shortnmae":
             case "longname":
             case "displayname":
-            case "canonicalAlias":
+            case "canonicalalias":
                 return(true);
             default:
                 return(false);
@@ -126,15 +209,9 @@ public class CommunicateRoomCache extends CommunicateResourceCacheBase {
         if(this.getSimplifiedID2ESRMap().isEmpty()){
             return(result);
         }
-        String simplifiedIDValueAsLowerCase = canonicalAlias.toLowerCase();
-        Enumeration<String> idSet = this.getSimplifiedID2ESRMap().keys();
-        while(idSet.hasMoreElements()){
-            String currentID = idSet.nextElement();
-            CommunicateRoomESR matrixRoom = (CommunicateRoomESR)this.getSimplifiedID2ESRMap().get(currentID);
-            String currentCanonicalAlias = matrixRoom.getCanonicalAlias();
-            if(currentCanonicalAlias.toLowerCase().contentEquals(canonicalAlias)){
-               result.getSearchResultList().add(matrixRoom);
-            }
+        CommunicateRoomESR matrixRoom = getRoomUsingCanonicalAlias(canonicalAlias);
+        if(matrixRoom != null){
+            result.getSearchResultList().add(matrixRoom);
         }
         return(result);
     }
@@ -22,6 +22,7 @@
 package net.fhirfactory.pegacorn.communicate.iris.datagrid.entityplane.cache;
 
 import net.fhirfactory.pegacorn.communicate.iris.datagrid.entityplane.cache.common.CommunicateResourceCacheBase;
+import net.fhirfactory.pegacorn.communicate.iris.datagrid.entityplane.cache.common.CommunicateResourceCachePolicy;
 import net.fhirfactory.pegacorn.core.model.ui.resources.simple.search.MatrixRoomSearchResult;
 import net.fhirfactory.pegacorn.core.model.ui.resources.simple.search.common.ESRSearchResult;
 import net.fhirfactory.pegacorn.core.model.ui.transactions.exceptions.ResourceInvalidSearchException;
@@ -34,6 +35,8 @@ import javax.enterprise.context.ApplicationScoped;
 public class CommunicateSessionCache extends CommunicateResourceCacheBase {
     private static final Logger LOG = LoggerFactory.getLogger(CommunicateSessionCache.class);
 
+    private static final long SESSION_IDLE_TIME_TO_LIVE_MILLIS = 30L * 60L * 1000L;
+
     @Override
     protected Logger getLogger(){
         return(LOG);
@@ -43,6 +46,13 @@ public class CommunicateSessionCache extends CommunicateResourceCacheBase {
         super();
     }
 
+    @Override
+    protected CommunicateResourceCachePolicy specifyCachePolicy(){
+        CommunicateResourceCachePolicy policy = new CommunicateResourceCachePolicy();
+        policy.setIdleTimeToLiveMillis(SESSION_IDLE_TIME_TO_LIVE_MILLIS);
+        return(policy);
+    }
+
     //
     // Search Functions
     //
@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2021 Mark Hunter
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.fhirfactory.pegacorn.communicate.iris.datagrid.entityplane.cache.common;
+
+import net.fhirfactory.pegacorn.core.model.ui.resources.simple.common.ExtremelySimplifiedResource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/**
+ * A secondary (non-unique) index over a single String attribute of the entries within a
+ * CommunicateResourceCacheBase. Attribute values are held lower-case within a sorted map so that
+ * prefix searches only visit the matching range. The index remembers which attribute value each
+ * entry was indexed under, so an entry whose attribute has since been changed in-place can still
+ * be cleanly re-indexed.
+ */
+public class CommunicateResourceAttributeIndex {
+    private ConcurrentSkipListMap<String, ConcurrentHashMap<String, ExtremelySimplifiedResource>> attributeValue2ESRMap;
+    private ConcurrentHashMap<String, String> simplifiedID2AttributeValueMap;
+
+    public CommunicateResourceAttributeIndex(){
+        this.attributeValue2ESRMap = new ConcurrentSkipListMap<>();
+        this.simplifiedID2AttributeValueMap = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Adds the entry to the index under the (lower-cased) attribute value, replacing any
+     * previous indexing of the same entry.
+     *
+     * @param entry The entry to be indexed
+     * @param attributeValue The value of the indexed attribute for this entry (may be null)
+     */
+    public void addEntry(ExtremelySimplifiedResource entry, String attributeValue){
+        if(entry == null || entry.getSimplifiedID() == null){
+            return;
+        }
+        String simplifiedIDKey = entry.getSimplifiedID().toLowerCase();
+        removeEntry(simplifiedIDKey);
+        if(attributeValue == null){
+            return;
+        }
+        String attributeValueKey = attributeValue.toLowerCase();
+        attributeValue2ESRMap.compute(attributeValueKey, (key, entrySet) -> {
+            if(entrySet == null){
+                entrySet = new ConcurrentHashMap<>();
+            }
+            entrySet.put(simplifiedIDKey, entry);
+            return(entrySet);
+        });
+        simplifiedID2AttributeValueMap.put(simplifiedIDKey, attributeValueKey);
+    }
+
+    /**
+     * Removes the entry from the index, using the attribute value it was originally indexed under.
+     *
+     * @param simplifiedID The simplifiedID of the entry to be removed
+     */
+    public void removeEntry(String simplifiedID){
+        if(simplifiedID == null){
+            return;
+        }
+        String simplifiedIDKey = simplifiedID.toLowerCase();
+        String attributeValueKey = simplifiedID2AttributeValueMap.remove(simplifiedIDKey);
+        if(attributeValueKey == null){
+            return;
+        }
+        attributeValue2ESRMap.computeIfPresent(attributeValueKey, (key, entrySet) -> {
+            entrySet.remove(simplifiedIDKey);
+            if(entrySet.isEmpty()){
+                return(null);
+            }
+            return(entrySet);
+        });
+    }
+
+    /**
+     * Returns all the entries whose (lower-case) attribute value starts with the supplied prefix.
+     *
+     * @param attributeValuePrefix The prefix to search for
+     * @return The list of matching entries (empty if none)
+     */
+    public List<ExtremelySimplifiedResource> searchUsingPrefix(String attributeValuePrefix){
+        List<ExtremelySimplifiedResource> matchingEntries = new ArrayList<>();
+        if(attributeValuePrefix == null){
+            return(matchingEntries);
+        }
+        String prefixAsLowerCase = attributeValuePrefix.toLowerCase();
+        for(Map.Entry<String, ConcurrentHashMap<String, ExtremelySimplifiedResource>> currentEntry: attributeValue2ESRMap.tailMap(prefixAsLowerCase, true).entrySet()){
+            if(!currentEntry.getKey().startsWith(prefixAsLowerCase)){
+                break;
+            }
+            matchingEntries.addAll(currentEntry.getValue().values());
+        }
+        return(matchingEntries);
+    }
+
+    public void clear(){
+        attributeValue2ESRMap.clear();
+        simplifiedID2AttributeValueMap.clear();
+    }
+
+    public int getIndexedEntryCount(){
+        return(simplifiedID2AttributeValueMap.size());
+    }
+
+    public int getDistinctAttributeValueCount(){
+        return(attributeValue2ESRMap.size());
+    }
+}
@@ -9,14 +9,54 @@ import net.fhirfactory.pegacorn.core.model.ui.transactions.ESRMethodOutcomeEnum;
 import net.fhirfactory.pegacorn.core.model.ui.transactions.exceptions.ResourceInvalidSearchException;
 import org.slf4j.Logger;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.enterprise.concurrent.ManagedScheduledExecutorService;
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Enumeration;
+import java.util.Map;
+import java.util.Objects;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 public abstract class CommunicateResourceCacheBase {
+    static final long EXPIRY_SWEEP_DELAY = 60000; // Delay (in Milliseconds) between idle-expiry sweeps
+
     private ConcurrentHashMap<IdentifierESDT, ExtremelySimplifiedResource> identifier2ESRMap;
     private ConcurrentHashMap<String, ExtremelySimplifiedResource> simplifiedID2ESRMap;
     private ConcurrentHashMap<String, ExtremelySimplifiedResource> displayName2ESRMap;
+    // Sorted (lower-case) mirrors of the simplifiedID/displayName maps, used to answer prefix searches
+    private ConcurrentSkipListMap<String, ExtremelySimplifiedResource> simplifiedIDPrefixIndex;
+    private ConcurrentSkipListMap<String, ExtremelySimplifiedResource> displayNamePrefixIndex;
+    // Exact-match identifier indexes: (type, use, value), and lower-case leafValue (which several resources
+    // may share, so each leafValue maps to its resources keyed by lower-case simplifiedID)
+    private ConcurrentHashMap<IdentifierIndexKey, ExtremelySimplifiedResource> identifierParameters2ESRMap;
+    private ConcurrentHashMap<String, ConcurrentHashMap<String, ExtremelySimplifiedResource>> identifierLeafValue2ESRMap;
+    // Capacity/eviction support (only exercised when specifyCachePolicy() returns a bounded policy)
+    // cachePolicy is published (volatile) only after the frequency sketch it implies has been built
+    private volatile CommunicateResourceCachePolicy cachePolicy;
+    private CommunicateResourceFrequencySketch frequencySketch;
+    private ConcurrentHashMap<String, CacheAccessStamp> simplifiedID2AccessStampMap;
+    private ConcurrentSkipListMap<Long, String> accessOrderIndex;
+    private AtomicLong accessTick;
+    private AtomicLong cacheHitCount;
+    private AtomicLong cacheMissCount;
+    private AtomicLong evictionCount;
+    private AtomicLong admissionRejectionCount;
+    // Snapshot support
+    private AtomicLong modificationCount;
+    private long modificationCountAtLastSnapshot;
+    private Instant lastSnapshotInstant;
+    private Instant restoredSnapshotInstant;
+
+    @Resource
+    ManagedScheduledExecutorService scheduler;
 
     abstract protected Logger getLogger();
 
@@ -30,6 +70,64 @@ public abstract class CommunicateResourceCacheBase {
         identifier2ESRMap = new ConcurrentHashMap<>();
         simplifiedID2ESRMap = new ConcurrentHashMap<>();
         displayName2ESRMap = new ConcurrentHashMap<>();
+        simplifiedIDPrefixIndex = new ConcurrentSkipListMap<>();
+        displayNamePrefixIndex = new ConcurrentSkipListMap<>();
+        identifierParameters2ESRMap = new ConcurrentHashMap<>();
+        identifierLeafValue2ESRMap = new ConcurrentHashMap<>();
+        simplifiedID2AccessStampMap = new ConcurrentHashMap<>();
+        accessOrderIndex = new ConcurrentSkipListMap<>();
+        accessTick = new AtomicLong(0);
+        cacheHitCount = new AtomicLong(0);
+        cacheMissCount = new AtomicLong(0);
+        evictionCount = new AtomicLong(0);
+        admissionRejectionCount = new AtomicLong(0);
+        modificationCount = new AtomicLong(0);
+        modificationCountAtLastSnapshot = -1;
+        lastSnapshotInstant = null;
+        restoredSnapshotInstant = null;
+    }
+
+    /**
+     * Resolves the cache policy up-front and, if the policy has an idle time-to-live, schedules a periodic
+     * sweep so that idle entries are released even when the cache is not being used.
+     */
+    @PostConstruct
+    protected void initialiseCachePolicy(){
+        CommunicateResourceCachePolicy policy = getCachePolicy();
+        if(policy.hasIdleTimeToLive() && this.scheduler != null){
+            this.scheduler.scheduleWithFixedDelay(this::sweepExpiredEntries, EXPIRY_SWEEP_DELAY, EXPIRY_SWEEP_DELAY, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Subclasses override this to bound their cache. The default is an unbounded cache with no idle
+     * expiry, which is the historic behaviour. Only bound caches whose contents can be re-derived (e.g.
+     * sessions) - an authoritative directory must stay unbounded, as a rejected or evicted entry is lost.
+     *
+     * @return The capacity/eviction policy for this cache
+     */
+    protected CommunicateResourceCachePolicy specifyCachePolicy(){
+        return(CommunicateResourceCachePolicy.unbounded());
+    }
+
+    public CommunicateResourceCachePolicy getCachePolicy(){
+        CommunicateResourceCachePolicy resolvedPolicy = this.cachePolicy;
+        if(resolvedPolicy == null){
+            synchronized(this){
+                resolvedPolicy = this.cachePolicy;
+                if(resolvedPolicy == null){
+                    resolvedPolicy = specifyCachePolicy();
+                    if(resolvedPolicy == null){
+                        resolvedPolicy = CommunicateResourceCachePolicy.unbounded();
+                    }
+                    if(resolvedPolicy.isFrequencyBasedAdmission()){
+                        this.frequencySketch = new CommunicateResourceFrequencySketch(resolvedPolicy.getMaximumEntries());
+                    }
+                    this.cachePolicy = resolvedPolicy;
+                }
+            }
+        }
+        return(resolvedPolicy);
     }
 
     public boolean hasEntry(String simplifiedID){
@@ -46,6 +144,13 @@ public abstract class CommunicateResourceCacheBase {
 
     protected void setIdentifier2ESRMap(ConcurrentHashMap<IdentifierESDT, ExtremelySimplifiedResource> identifier2ESRMap) {
         this.identifier2ESRMap = identifier2ESRMap;
+        this.identifierParameters2ESRMap.clear();
+        this.identifierLeafValue2ESRMap.clear();
+        if(identifier2ESRMap != null){
+            for(Map.Entry<IdentifierESDT, ExtremelySimplifiedResource> currentEntry: identifier2ESRMap.entrySet()){
+                addToIdentifierIndexes(currentEntry.getKey(), currentEntry.getValue());
+            }
+        }
     }
 
     public ConcurrentHashMap<String, ExtremelySimplifiedResource> getSimplifiedID2ESRMap() {
@@ -54,6 +159,7 @@ public abstract class CommunicateResourceCacheBase {
 
     public void setSimplifiedID2ESRMap(ConcurrentHashMap<String, ExtremelySimplifiedResource> simplifiedID2ESRMap) {
         this.simplifiedID2ESRMap = simplifiedID2ESRMap;
+        rebuildPrefixIndex(this.simplifiedIDPrefixIndex, simplifiedID2ESRMap);
     }
 
     public ConcurrentHashMap<String, ExtremelySimplifiedResource> getDisplayName2ESRMap() {
@@ -62,6 +168,7 @@ public abstract class CommunicateResourceCacheBase {
 
     public void setDisplayName2ESRMap(ConcurrentHashMap<String, ExtremelySimplifiedResource> displayName2ESRMap) {
         this.displayName2ESRMap = displayName2ESRMap;
+        rebuildPrefixIndex(this.displayNamePrefixIndex, displayName2ESRMap);
     }
 
     public ESRMethodOutcome addCacheEntry(ExtremelySimplifiedResource entry){
@@ -92,7 +199,7 @@ public abstract class CommunicateResourceCacheBase {
             getLogger().trace(".addCacheEntry(): New Id --> {}", entry.getSimplifiedID());
         } else {
             getLogger().trace(".addCacheEntry(): Resource has an Id already... attempting to retrieve associated Resource");
-            ExtremelySimplifiedResource foundEntry = getCacheEntry(entry.getSimplifiedID());
+            ExtremelySimplifiedResource foundEntry = this.simplifiedID2ESRMap.get(entry.getSimplifiedID().toLowerCase());
             if(foundEntry != null){
                 getLogger().trace(".addCacheEntry(): Resource already exists, so cant create it again.... ");
                 ESRMethodOutcome outcome = new ESRMethodOutcome();
@@ -104,17 +211,39 @@ public abstract class CommunicateResourceCacheBase {
                 return(outcome);
             }
         }
+        if(!admitCacheEntry(entry)){
+            getLogger().debug(".addCacheEntry(): Exit, cache is full and entry was not admitted");
+            ESRMethodOutcome outcome = new ESRMethodOutcome();
+            outcome.setStatus(ESRMethodOutcomeEnum.CREATE_ENTRY_INVALID);
+            outcome.setId(entry.getSimplifiedID());
+            outcome.setCreated(false);
+            outcome.setStatusReason("Cache is full, entry not admitted");
+            return(outcome);
+        }
         getLogger().trace(".addCacheEntry(): Adding to Identifier based Cache");
         for(IdentifierESDT identifier: entry.getIdentifiers() ){
             this.identifier2ESRMap.put(identifier, entry);
+            addToIdentifierIndexes(identifier, entry);
         }
         getLogger().trace(".addCacheEntry(): Adding to displayName based Cache");
         if(entry.getDisplayName() == null){
             entry.setDisplayName(entry.getSimplifiedID());
         }
-        this.displayName2ESRMap.putIfAbsent(entry.getDisplayName().toLowerCase(), entry);
+        String displayNameKey = entry.getDisplayName().toLowerCase();
+        this.displayName2ESRMap.putIfAbsent(displayNameKey, entry);
+        this.displayNamePrefixIndex.putIfAbsent(displayNameKey, entry);
         getLogger().trace(".addCacheEntry(): Adding to simplifiedID based Cache");
-        this.simplifiedID2ESRMap.putIfAbsent(entry.getSimplifiedID().toLowerCase(), entry);
+        String simplifiedIDKey = entry.getSimplifiedID().toLowerCase();
+        this.simplifiedID2ESRMap.putIfAbsent(simplifiedIDKey, entry);
+        this.simplifiedIDPrefixIndex.putIfAbsent(simplifiedIDKey, entry);
+        getLogger().trace(".addCacheEntry(): Adding to (subclass) secondary indexes");
+        addToSecondaryIndexes(entry);
+        modificationCount.incrementAndGet();
+        if(getCachePolicy().isBounded()){
+            recordCacheAccess(simplifiedIDKey);
+            enforceMaximumEntries();
+            evictExpiredEntries();
+        }
         ESRMethodOutcome outcome = new ESRMethodOutcome();
         outcome.setStatus(ESRMethodOutcomeEnum.CREATE_ENTRY_SUCCESSFUL);
         outcome.setId(entry.getSimplifiedID());
@@ -131,12 +260,14 @@ public abstract class CommunicateResourceCacheBase {
             getLogger().debug(".removeCacheEntry(): Exit, Identifier not in the cache");
             return;
         }
-        this.identifier2ESRMap.remove(identifier);
+        ExtremelySimplifiedResource removedEntry = this.identifier2ESRMap.remove(identifier);
+        removeFromIdentifierIndexes(identifier, removedEntry);
         getLogger().debug(".removeCacheEntry(): Exit, entry removed");
     }
 
     protected void removeCacheEntry(String id){
         getLogger().debug(".removeCacheEntry(): Entry (using Id)");
+        removeCacheAccessStamp(id.toLowerCase());
         if(simplifiedID2ESRMap.isEmpty()){
             return;
         }
@@ -144,14 +275,53 @@ public abstract class CommunicateResourceCacheBase {
         if(containsKey) {
             ExtremelySimplifiedResource foundEntry = this.simplifiedID2ESRMap.get(id.toLowerCase());
             for(IdentifierESDT entryIdentifier: foundEntry.getIdentifiers()){
-                removeCacheEntry(entryIdentifier);
+                if(this.identifier2ESRMap.remove(entryIdentifier, foundEntry)){
+                    removeFromIdentifierIndexes(entryIdentifier, foundEntry);
+                }
+            }
+            removeFromSecondaryIndexes(foundEntry);
+            if(foundEntry.getDisplayName() != null){
+                this.displayName2ESRMap.remove(foundEntry.getDisplayName().toLowerCase(), foundEntry);
+                this.displayNamePrefixIndex.remove(foundEntry.getDisplayName().toLowerCase(), foundEntry);
             }
-            this.displayName2ESRMap.remove(foundEntry.getDisplayName().toLowerCase());
             this.simplifiedID2ESRMap.remove(id.toLowerCase());
+            this.simplifiedIDPrefixIndex.remove(id.toLowerCase());
+            modificationCount.incrementAndGet();
         }
         getLogger().debug(".removeCacheEntry(): Exit, entry removed");
     }
 
+    /**
+     * Changes the displayName of an entry that is already in the cache, moving it from its old to its new
+     * key in the displayName maps. As per addCacheEntry(), a null displayName defaults to the simplifiedID.
+     *
+     * @param entry The (cached) entry to be renamed
+     * @param displayName The new displayName
+     */
+    protected void updateCacheEntryDisplayName(ExtremelySimplifiedResource entry, String displayName){
+        getLogger().debug(".updateCacheEntryDisplayName(): Entry, displayName->{}", displayName);
+        if(entry == null){
+            getLogger().debug(".updateCacheEntryDisplayName(): Exit, entry is null");
+            return;
+        }
+        if(displayName == null){
+            displayName = entry.getSimplifiedID();
+        }
+        if(entry.getDisplayName() != null){
+            String previousDisplayNameKey = entry.getDisplayName().toLowerCase();
+            this.displayName2ESRMap.remove(previousDisplayNameKey, entry);
+            this.displayNamePrefixIndex.remove(previousDisplayNameKey, entry);
+        }
+        entry.setDisplayName(displayName);
+        if(displayName != null){
+            String displayNameKey = displayName.toLowerCase();
+            this.displayName2ESRMap.putIfAbsent(displayNameKey, entry);
+            this.displayNamePrefixIndex.putIfAbsent(displayNameKey, entry);
+        }
+        modificationCount.incrementAndGet();
+        getLogger().debug(".updateCacheEntryDisplayName(): Exit");
+    }
+
     protected ExtremelySimplifiedResource getCacheEntry(IdentifierESDT identifier){
         getLogger().debug(".getCacheEntry(): Entry (using IdentifierDE), identifier --> {}", identifier);
         if(identifier == null){
@@ -159,7 +329,11 @@ public abstract class CommunicateResourceCacheBase {
             return(null);
         }
         ExtremelySimplifiedResource foundEntry = this.identifier2ESRMap.get(identifier);
+        if(foundEntry != null && !recordCacheHit(foundEntry)){
+            foundEntry = null;
+        }
         if(foundEntry == null) {
+            cacheMissCount.incrementAndGet();
             getLogger().debug(".getCacheEntry(): Exit, couldn't find element, returning NULL");
             return(null);
         } else {
@@ -179,15 +353,423 @@ public abstract class CommunicateResourceCacheBase {
             return(null);
         }
         ExtremelySimplifiedResource entry = this.simplifiedID2ESRMap.get(idValue);
+        if(entry != null && !recordCacheHit(entry)){
+            entry = null;
+        }
         if(entry != null){
             getLogger().debug(".getCacheEntry(): Exit, entry found");
             return(entry);
         } else {
+            cacheMissCount.incrementAndGet();
+            if(frequencySketch != null){
+                frequencySketch.increment(idValue.toLowerCase());
+            }
             getLogger().debug(".getCacheEntry(): Exit, entry not found");
             return (null);
         }
     }
 
+    //
+    // Capacity/Eviction Support
+    //
+
+    /**
+     * Records a successful lookup of the entry (updating its recency and frequency). If the entry has
+     * been idle for longer than the policy allows, it is evicted instead.
+     *
+     * @param entry The entry that was found
+     * @return true if the entry is (still) valid, false if it had expired and was evicted
+     */
+    private boolean recordCacheHit(ExtremelySimplifiedResource entry){
+        CommunicateResourceCachePolicy policy = getCachePolicy();
+        if(policy.isBounded() && entry.getSimplifiedID() != null){
+            String simplifiedIDKey = entry.getSimplifiedID().toLowerCase();
+            if(policy.hasIdleTimeToLive()){
+                CacheAccessStamp accessStamp = simplifiedID2AccessStampMap.get(simplifiedIDKey);
+                if(accessStamp != null && isExpired(accessStamp, System.currentTimeMillis() - policy.getIdleTimeToLiveMillis())){
+                    evictCacheEntry(simplifiedIDKey);
+                    return(false);
+                }
+            }
+            if(frequencySketch != null){
+                frequencySketch.increment(simplifiedIDKey);
+            }
+            recordCacheAccess(simplifiedIDKey);
+        }
+        cacheHitCount.incrementAndGet();
+        return(true);
+    }
+
+    /**
+     * Records every entry returned by a search as a cache hit, so entries that are only ever found via
+     * the search methods are not expired while in use. Entries that had already expired are evicted and
+     * dropped from the result.
+     *
+     * @param result The search result to be recorded (and filtered)
+     */
+    protected void recordSearchHits(ESRSearchResult result){
+        if(result == null || !getCachePolicy().isBounded()){
+            return;
+        }
+        result.getSearchResultList().removeIf(currentEntry -> !recordCacheHit(currentEntry));
+    }
+
+    private void recordCacheAccess(String simplifiedIDKey){
+        CacheAccessStamp newStamp = new CacheAccessStamp(accessTick.incrementAndGet(), System.currentTimeMillis());
+        CacheAccessStamp previousStamp = simplifiedID2AccessStampMap.put(simplifiedIDKey, newStamp);
+        if(previousStamp != null){
+            accessOrderIndex.remove(previousStamp.getTick(), simplifiedIDKey);
+        }
+        accessOrderIndex.put(newStamp.getTick(), simplifiedIDKey);
+    }
+
+    private void removeCacheAccessStamp(String simplifiedIDKey){
+        CacheAccessStamp previousStamp = simplifiedID2AccessStampMap.remove(simplifiedIDKey);
+        if(previousStamp != null){
+            accessOrderIndex.remove(previousStamp.getTick(), simplifiedIDKey);
+        }
+    }
+
+    /**
+     * Decides whether a new entry may be added. Unless the policy uses frequency based admission (and the
+     * cache is full), every entry is admitted. Otherwise the new entry must have been requested at least as
+     * often as the least-recently-used entry (which it will then displace).
+     */
+    private boolean admitCacheEntry(ExtremelySimplifiedResource entry){
+        CommunicateResourceCachePolicy policy = getCachePolicy();
+        if(!policy.hasMaximumEntries() || frequencySketch == null){
+            return(true);
+        }
+        if(simplifiedID2ESRMap.size() < policy.getMaximumEntries()){
+            return(true);
+        }
+        String simplifiedIDKey = entry.getSimplifiedID().toLowerCase();
+        frequencySketch.increment(simplifiedIDKey);
+        String victimKey = findEvictionCandidate();
+        if(victimKey == null){
+            return(true);
+        }
+        if(frequencySketch.frequency(simplifiedIDKey) < frequencySketch.frequency(victimKey)){
+            admissionRejectionCount.incrementAndGet();
+            return(false);
+        }
+        return(true);
+    }
+
+    /**
+     * @return The simplifiedID key of the least-recently-used entry, or null if none is being tracked
+     */
+    private String findEvictionCandidate(){
+        Map.Entry<Long, String> oldestEntry = accessOrderIndex.firstEntry();
+        while(oldestEntry != null){
+            CacheAccessStamp currentStamp = simplifiedID2AccessStampMap.get(oldestEntry.getValue());
+            if(currentStamp != null && currentStamp.getTick() == oldestEntry.getKey()){
+                return(oldestEntry.getValue());
+            }
+            // stale ordering entry (superseded by a later access, or already removed)
+            accessOrderIndex.remove(oldestEntry.getKey(), oldestEntry.getValue());
+            oldestEntry = accessOrderIndex.firstEntry();
+        }
+        return(null);
+    }
+
+    private void enforceMaximumEntries(){
+        CommunicateResourceCachePolicy policy = getCachePolicy();
+        if(!policy.hasMaximumEntries()){
+            return;
+        }
+        while(simplifiedID2ESRMap.size() > policy.getMaximumEntries()){
+            String victimKey = findEvictionCandidate();
+            if(victimKey == null){
+                break;
+            }
+            evictCacheEntry(victimKey);
+        }
+    }
+
+    /**
+     * Removes all entries that have been idle for longer than the policy's idle time-to-live. Because the
+     * access order index is sorted oldest first, only the expired entries (plus one) are visited.
+     *
+     * @return The number of entries evicted
+     */
+    public int evictExpiredEntries(){
+        CommunicateResourceCachePolicy policy = getCachePolicy();
+        if(!policy.hasIdleTimeToLive()){
+            return(0);
+        }
+        long expiryCutoff = System.currentTimeMillis() - policy.getIdleTimeToLiveMillis();
+        int evictedCount = 0;
+        String victimKey = findEvictionCandidate();
+        while(victimKey != null){
+            CacheAccessStamp victimStamp = simplifiedID2AccessStampMap.get(victimKey);
+            if(victimStamp != null && !isExpired(victimStamp, expiryCutoff)){
+                break;
+            }
+            evictCacheEntry(victimKey);
+            evictedCount += 1;
+            victimKey = findEvictionCandidate();
+        }
+        if(evictedCount > 0){
+            getLogger().debug(".evictExpiredEntries(): Evicted {} expired entries", evictedCount);
+        }
+        return(evictedCount);
+    }
+
+    private void sweepExpiredEntries(){
+        try {
+            evictExpiredEntries();
+        } catch(RuntimeException sweepException){
+            // a failed sweep should not cancel the scheduled task
+            getLogger().warn(".sweepExpiredEntries(): Could not sweep expired entries: {}", sweepException.toString());
+        }
+    }
+
+    private boolean isExpired(CacheAccessStamp accessStamp, long expiryCutoff){
+        return(accessStamp.getAccessInstant() < expiryCutoff);
+    }
+
+    private void evictCacheEntry(String simplifiedIDKey){
+        getLogger().trace(".evictCacheEntry(): Evicting entry --> {}", simplifiedIDKey);
+        removeCacheEntry(simplifiedIDKey);
+        evictionCount.incrementAndGet();
+    }
+
+    public int getCacheSize(){
+        return(simplifiedID2ESRMap.size());
+    }
+
+    public long getCacheHitCount(){
+        return(cacheHitCount.get());
+    }
+
+    public long getCacheMissCount(){
+        return(cacheMissCount.get());
+    }
+
+    public long getEvictionCount(){
+        return(evictionCount.get());
+    }
+
+    public long getAdmissionRejectionCount(){
+        return(admissionRejectionCount.get());
+    }
+
+    /**
+     * The (tick, wall-clock) stamp of the most recent access to a cache entry. The tick gives a strict
+     * recency order; the wall-clock instant is used for idle expiry.
+     */
+    private static final class CacheAccessStamp {
+        private final long tick;
+        private final long accessInstant;
+
+        private CacheAccessStamp(long tick, long accessInstant){
+            this.tick = tick;
+            this.accessInstant = accessInstant;
+        }
+
+        private long getTick(){
+            return(tick);
+        }
+
+        private long getAccessInstant(){
+            return(accessInstant);
+        }
+    }
+
+    //
+    // Snapshot Support
+    //
+
+    /**
+     * @return The name used for this cache's snapshot file (by default the cache's class name)
+     */
+    protected String specifySnapshotName(){
+        String className = getClass().getSimpleName();
+        int proxySuffixStart = className.indexOf('$');
+        if(proxySuffixStart > 0){
+            className = className.substring(0, proxySuffixStart);
+        }
+        return(className);
+    }
+
+    public String getSnapshotName(){
+        return(specifySnapshotName());
+    }
+
+    /**
+     * Writes the current cache contents to the snapshot file, unless nothing has changed since the previous
+     * snapshot was written (or restored).
+     *
+     * @param snapshotFile The snapshot file to be written
+     * @return The number of entries written (0 if the snapshot was skipped)
+     * @throws IOException If the snapshot could not be written
+     */
+    public int writeSnapshot(CommunicateResourceCacheSnapshotFile snapshotFile) throws IOException {
+        getLogger().debug(".writeSnapshot(): Entry, snapshotFile->{}", snapshotFile.getSnapshotPath());
+        long currentModificationCount = modificationCount.get();
+        if(currentModificationCount == modificationCountAtLastSnapshot && snapshotFile.exists()){
+            getLogger().debug(".writeSnapshot(): Exit, no changes since last snapshot");
+            return(0);
+        }
+        Instant snapshotInstant = Instant.now();
+        Collection<ExtremelySimplifiedResource> snapshotEntries = new ArrayList<>(this.simplifiedID2ESRMap.values());
+        int entryCount = snapshotFile.write(snapshotEntries, snapshotInstant);
+        this.modificationCountAtLastSnapshot = currentModificationCount;
+        this.lastSnapshotInstant = snapshotInstant;
+        getLogger().debug(".writeSnapshot(): Exit, entryCount->{}", entryCount);
+        return(entryCount);
+    }
+
+    /**
+     * Loads the entries from the snapshot file into the cache (entries already present are left untouched).
+     * Changes made after getRestoredSnapshotInstant() are not in the snapshot and must be caught-up separately.
+     *
+     * @param snapshotFile The snapshot file to be read
+     * @return The number of entries restored
+     * @throws IOException If the snapshot could not be read
+     */
+    public int restoreSnapshot(CommunicateResourceCacheSnapshotFile snapshotFile) throws IOException {
+        getLogger().debug(".restoreSnapshot(): Entry, snapshotFile->{}", snapshotFile.getSnapshotPath());
+        CommunicateResourceCacheSnapshotFile.Contents snapshotContents = snapshotFile.read();
+        if(snapshotContents == null){
+            getLogger().debug(".restoreSnapshot(): Exit, no snapshot to restore");
+            return(0);
+        }
+        int restoredCount = 0;
+        for(ExtremelySimplifiedResource currentEntry: snapshotContents.getEntries()){
+            ESRMethodOutcome outcome = addCacheEntry(currentEntry);
+            if(outcome.getStatus() == ESRMethodOutcomeEnum.CREATE_ENTRY_SUCCESSFUL){
+                restoredCount += 1;
+            }
+        }
+        this.restoredSnapshotInstant = snapshotContents.getSnapshotInstant();
+        this.lastSnapshotInstant = snapshotContents.getSnapshotInstant();
+        this.modificationCountAtLastSnapshot = modificationCount.get();
+        getLogger().debug(".restoreSnapshot(): Exit, snapshotInstant->{}, restoredCount->{}", restoredSnapshotInstant, restoredCount);
+        return(restoredCount);
+    }
+
+    /**
+     * @return The instant of the snapshot this cache was warm-started from (null if it was not restored)
+     */
+    public Instant getRestoredSnapshotInstant(){
+        return(restoredSnapshotInstant);
+    }
+
+    public Instant getLastSnapshotInstant(){
+        return(lastSnapshotInstant);
+    }
+
+    //
+    // Identifier Index Support
+    //
+
+    private void addToIdentifierIndexes(IdentifierESDT identifier, ExtremelySimplifiedResource entry){
+        if(identifier == null || entry == null){
+            return;
+        }
+        if(identifier.getValue() != null){
+            identifierParameters2ESRMap.put(new IdentifierIndexKey(identifier.getType(), identifier.getUse(), identifier.getValue()), entry);
+        }
+        if(identifier.getLeafValue() != null && entry.getSimplifiedID() != null){
+            String simplifiedIDKey = entry.getSimplifiedID().toLowerCase();
+            identifierLeafValue2ESRMap.compute(identifier.getLeafValue().toLowerCase(), (leafValueKey, leafValueEntries) -> {
+                if(leafValueEntries == null){
+                    leafValueEntries = new ConcurrentHashMap<>();
+                }
+                leafValueEntries.put(simplifiedIDKey, entry);
+                return(leafValueEntries);
+            });
+        }
+    }
+
+    private void removeFromIdentifierIndexes(IdentifierESDT identifier, ExtremelySimplifiedResource entry){
+        if(identifier == null || entry == null){
+            return;
+        }
+        if(identifier.getValue() != null){
+            identifierParameters2ESRMap.remove(new IdentifierIndexKey(identifier.getType(), identifier.getUse(), identifier.getValue()), entry);
+        }
+        if(identifier.getLeafValue() != null && entry.getSimplifiedID() != null){
+            String simplifiedIDKey = entry.getSimplifiedID().toLowerCase();
+            identifierLeafValue2ESRMap.computeIfPresent(identifier.getLeafValue().toLowerCase(), (leafValueKey, leafValueEntries) -> {
+                leafValueEntries.remove(simplifiedIDKey, entry);
+                if(leafValueEntries.isEmpty()){
+                    return(null);
+                }
+                return(leafValueEntries);
+            });
+        }
+    }
+
+    /**
+     * Composite (type, use, value) key for the exact-match identifier indexes.
+     */
+    private static final class IdentifierIndexKey {
+        private final String type;
+        private final IdentifierESDTUseEnum use;
+        private final String value;
+        private final int hashCode;
+
+        IdentifierIndexKey(String type, IdentifierESDTUseEnum use, String value){
+            this.type = type;
+            this.use = use;
+            this.value = value;
+            this.hashCode = Objects.hash(type, use, value);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            IdentifierIndexKey that = (IdentifierIndexKey) o;
+            return Objects.equals(type, that.type) && use == that.use && Objects.equals(value, that.value);
+        }
+
+        @Override
+        public int hashCode() {
+            return(hashCode);
+        }
+    }
+
+    //
+    // Secondary Index Support
+    //
+
+    /**
+     * Invoked (after the core maps have been updated) whenever an entry is added to the cache. Subclasses
+     * that maintain their own attribute indexes should override this - the default does nothing.
+     *
+     * @param entry The entry that has just been added
+     */
+    protected void addToSecondaryIndexes(ExtremelySimplifiedResource entry){
+        // Subclasses can optionally override
+    }
+
+    /**
+     * Invoked whenever an entry is removed from the cache. Subclasses that maintain their own attribute
+     * indexes should override this - the default does nothing.
+     *
+     * @param entry The entry that has just been removed
+     */
+    protected void removeFromSecondaryIndexes(ExtremelySimplifiedResource entry){
+        // Subclasses can optionally override
+    }
+
+    /**
+     * Re-indexes an entry whose (secondary index) attributes have been changed in-place.
+     *
+     * @param entry The entry that has been updated
+     */
+    protected void refreshSecondaryIndexes(ExtremelySimplifiedResource entry){
+        if(entry == null){
+            return;
+        }
+        removeFromSecondaryIndexes(entry);
+        addToSecondaryIndexes(entry);
+    }
+
     //
     // Helper Functions
     //
@@ -212,6 +794,33 @@ public abstract class CommunicateResourceCacheBase {
         }
     }
 
+    /**
+     * Collects every entry whose (lower-case) key starts with the given (lower-case) prefix. The index is sorted,
+     * so matching keys are contiguous and the walk stops at the first key that no longer shares the prefix.
+     *
+     * @param prefixIndex The sorted index to walk
+     * @param prefixAsLowerCase The lower-case prefix to match against
+     * @param result The search result to which matching entries are added
+     */
+    protected void searchPrefixIndex(ConcurrentSkipListMap<String, ExtremelySimplifiedResource> prefixIndex, String prefixAsLowerCase, ESRSearchResult result){
+        for(Map.Entry<String, ExtremelySimplifiedResource> currentEntry: prefixIndex.tailMap(prefixAsLowerCase, true).entrySet()){
+            if(!currentEntry.getKey().startsWith(prefixAsLowerCase)){
+                break;
+            }
+            result.getSearchResultList().add(currentEntry.getValue());
+        }
+    }
+
+    private void rebuildPrefixIndex(ConcurrentSkipListMap<String, ExtremelySimplifiedResource> prefixIndex, ConcurrentHashMap<String, ExtremelySimplifiedResource> sourceMap){
+        prefixIndex.clear();
+        if(sourceMap == null){
+            return;
+        }
+        for(Map.Entry<String, ExtremelySimplifiedResource> currentEntry: sourceMap.entrySet()){
+            prefixIndex.put(currentEntry.getKey().toLowerCase(), currentEntry.getValue());
+        }
+    }
+
     //
     // Search Services
     //
@@ -230,14 +839,8 @@ public abstract class CommunicateResourceCacheBase {
             return(result);
         }
         String simplifiedIDValueAsLowerCase = simplifiedIDValue.toLowerCase();
-        Enumeration<String> idSet = this.simplifiedID2ESRMap.keys();
-        while(idSet.hasMoreElements()){
-            String currentID = idSet.nextElement();
-            if(currentID.toLowerCase().startsWith(simplifiedIDValueAsLowerCase)){
-                ExtremelySimplifiedResource resource = this.simplifiedID2ESRMap.get(currentID);
-                result.getSearchResultList().add(resource);
-            }
-        }
+        searchPrefixIndex(this.simplifiedIDPrefixIndex, simplifiedIDValueAsLowerCase, result);
+        recordSearchHits(result);
         return(result);
     }
 
@@ -277,43 +880,54 @@ public abstract class CommunicateResourceCacheBase {
         if(useIsNull && typeIsNull && valueIsNull) {
             getLogger().debug(".searchCacheForESRUsingIdentifierParameters(): Exit, return empty result --> {}", result);
             return(result);
-        } else {
-            Enumeration<IdentifierESDT> identifierSet = this.identifier2ESRMap.keys();
-            while(identifierSet.hasMoreElements()){
-                IdentifierESDT currentIdentifier = identifierSet.nextElement();
-                boolean valueMatches = false;
-                if(!valueIsNull){
-                    if(currentIdentifier.getValue().contains(value)){
-                        valueMatches = true;
-                    }
-                } else {
+        }
+        if(!useIsNull && !typeIsNull && !valueIsNull){
+            // An exact (type, use, value) match also satisfies the substring match below, so try the index first
+            ExtremelySimplifiedResource exactMatch = this.identifierParameters2ESRMap.get(new IdentifierIndexKey(type, use, value));
+            if(exactMatch != null){
+                result.getSearchResultList().add(exactMatch);
+                recordSearchHits(result);
+                getLogger().debug(".searchCacheForESRUsingIdentifierParameters(): Exit, (exact match) result --> {}", result);
+                return(result);
+            }
+        }
+        getLogger().trace(".searchCacheForESRUsingIdentifierParameters(): No exact match, falling back to a (substring) scan");
+        Enumeration<IdentifierESDT> identifierSet = this.identifier2ESRMap.keys();
+        while(identifierSet.hasMoreElements()){
+            IdentifierESDT currentIdentifier = identifierSet.nextElement();
+            boolean valueMatches = false;
+            if(!valueIsNull){
+                if(currentIdentifier.getValue().contains(value)){
                     valueMatches = true;
                 }
-                boolean typeMatches = false;
-                if(!typeIsNull){
-                    if(currentIdentifier.getType().contains(type)){
-                        typeMatches = true;
-                    }
-                } else {
+            } else {
+                valueMatches = true;
+            }
+            boolean typeMatches = false;
+            if(!typeIsNull){
+                if(currentIdentifier.getType().contains(type)){
                     typeMatches = true;
                 }
-                boolean useMatches = false;
-                if(!useIsNull){
-                    if(currentIdentifier.getUse().equals(use)){
-                        useMatches = true;
-                    }
-                } else {
+            } else {
+                typeMatches = true;
+            }
+            boolean useMatches = false;
+            if(!useIsNull){
+                if(currentIdentifier.getUse().equals(use)){
                     useMatches = true;
                 }
-                if(useMatches && typeMatches && valueMatches){
-                    ExtremelySimplifiedResource resource = this.identifier2ESRMap.get(currentIdentifier);
-                    result.getSearchResultList().add(resource);
-                    break;
-                }
+            } else {
+                useMatches = true;
+            }
+            if(useMatches && typeMatches && valueMatches){
+                ExtremelySimplifiedResource resource = this.identifier2ESRMap.get(currentIdentifier);
+                result.getSearchResultList().add(resource);
+                break;
             }
-            getLogger().debug(".searchCacheForESRUsingIdentifierParameters(): Exit, result --> {}", result);
-            return(result);
         }
+        recordSearchHits(result);
+        getLogger().debug(".searchCacheForESRUsingIdentifierParameters(): Exit, result --> {}", result);
+        return(result);
     }
 
     public ESRSearchResult searchCacheUsingDisplayName(String displayNameValue)
@@ -330,14 +944,8 @@ public abstract class CommunicateResourceCacheBase {
             return(result);
         }
         String displayNameValueAsLowerCase = displayNameValue.toLowerCase();
-        Enumeration<String> displayNameSet = displayName2ESRMap.keys();
-        while(displayNameSet.hasMoreElements()){
-            String currentDisplayName = displayNameSet.nextElement();
-            if(currentDisplayName.toLowerCase().startsWith(displayNameValueAsLowerCase)){
-                ExtremelySimplifiedResource resource = this.simplifiedID2ESRMap.get(currentDisplayName);
-                result.getSearchResultList().add(resource);
-            }
-        }
+        searchPrefixIndex(this.displayNamePrefixIndex, displayNameValueAsLowerCase, result);
+        recordSearchHits(result);
         return(result);
     }
 
@@ -356,19 +964,16 @@ public abstract class CommunicateResourceCacheBase {
         ESRSearchResult result = instatiateNewESRSearchResult();
         if(valueIsNull) {
             return(result);
-        } else {
-            String leafValueAsLowerCase = leafValue.toLowerCase();
-            Enumeration<IdentifierESDT> identifierSet = this.identifier2ESRMap.keys();
-            while(identifierSet.hasMoreElements()){
-                IdentifierESDT currentIdentifier = identifierSet.nextElement();
-                boolean valueMatches = false;
-                if(currentIdentifier.getLeafValue().toLowerCase().equals(leafValueAsLowerCase)){
-                    ExtremelySimplifiedResource resource = this.identifier2ESRMap.get(currentIdentifier);
-                    result.getSearchResultList().add(resource);
-                    break;
-                }
+        }
+        // As per the historic scan, the first resource found with the leafValue is returned
+        ConcurrentHashMap<String, ExtremelySimplifiedResource> leafValueEntries = this.identifierLeafValue2ESRMap.get(leafValue.toLowerCase());
+        if(leafValueEntries != null){
+            for(ExtremelySimplifiedResource resource: leafValueEntries.values()){
+                result.getSearchResultList().add(resource);
+                break;
             }
-            return(result);
         }
+        recordSearchHits(result);
+        return(result);
     }
 }
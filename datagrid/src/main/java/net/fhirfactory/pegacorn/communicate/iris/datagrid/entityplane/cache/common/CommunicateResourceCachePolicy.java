@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2021 Mark Hunter
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.fhirfactory.pegacorn.communicate.iris.datagrid.entityplane.cache.common;
+
+/**
+ * The capacity/eviction policy of a CommunicateResourceCacheBase subclass. The default policy is unbounded
+ * (no maximum, no idle expiry, no admission filtering), which is the historic behaviour of the caches.
+ */
+public class CommunicateResourceCachePolicy {
+    private long maximumEntries;
+    private long idleTimeToLiveMillis;
+    private boolean frequencyBasedAdmission;
+
+    public CommunicateResourceCachePolicy(){
+        this.maximumEntries = 0;
+        this.idleTimeToLiveMillis = 0;
+        this.frequencyBasedAdmission = false;
+    }
+
+    public static CommunicateResourceCachePolicy unbounded(){
+        return(new CommunicateResourceCachePolicy());
+    }
+
+    //
+    // Helper Methods
+    //
+
+    public boolean hasMaximumEntries(){
+        return(maximumEntries > 0);
+    }
+
+    public boolean hasIdleTimeToLive(){
+        return(idleTimeToLiveMillis > 0);
+    }
+
+    public boolean isBounded(){
+        return(hasMaximumEntries() || hasIdleTimeToLive());
+    }
+
+    //
+    // Getters and Setters
+    //
+
+    /**
+     * @return The maximum number of entries the cache may hold (0 means unbounded)
+     */
+    public long getMaximumEntries() {
+        return maximumEntries;
+    }
+
+    public void setMaximumEntries(long maximumEntries) {
+        this.maximumEntries = maximumEntries;
+    }
+
+    /**
+     * @return How long (in milliseconds) an entry may go un-accessed before it is expired (0 means never)
+     */
+    public long getIdleTimeToLiveMillis() {
+        return idleTimeToLiveMillis;
+    }
+
+    public void setIdleTimeToLiveMillis(long idleTimeToLiveMillis) {
+        this.idleTimeToLiveMillis = idleTimeToLiveMillis;
+    }
+
+    /**
+     * @return Whether, once the cache is full, a new entry must be more frequently requested than the
+     * least-recently-used entry in order to displace it (a TinyLFU-style admission filter)
+     */
+    public boolean isFrequencyBasedAdmission() {
+        return frequencyBasedAdmission;
+    }
+
+    public void setFrequencyBasedAdmission(boolean frequencyBasedAdmission) {
+        this.frequencyBasedAdmission = frequencyBasedAdmission;
+    }
+
+    @Override
+    public String toString() {
+        return "CommunicateResourceCachePolicy{" +
+                "maximumEntries=" + maximumEntries +
+                ", idleTimeToLiveMillis=" + idleTimeToLiveMillis +
+                ", frequencyBasedAdmission=" + frequencyBasedAdmission +
+                '}';
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright (c) 2021 Mark Hunter
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.fhirfactory.pegacorn.communicate.iris.datagrid.entityplane.cache.common;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import net.fhirfactory.pegacorn.core.model.ui.resources.simple.common.ExtremelySimplifiedResource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads and writes the binary snapshot of a single CommunicateResourceCacheBase. The layout is:
+ *
+ *  header : int magic, int version, long snapshotInstant (epoch millis), int entryCount
+ *  entry  : short classNameLength, byte[] className (UTF-8), int payloadLength, byte[] payload (JSON)
+ *
+ * Snapshots are written to a temporary file which is then atomically moved over the previous snapshot, so
+ * a reader never sees a partially written file. Snapshots are read via a memory-mapped (read-only) buffer.
+ */
+public class CommunicateResourceCacheSnapshotFile {
+    private static final Logger LOG = LoggerFactory.getLogger(CommunicateResourceCacheSnapshotFile.class);
+
+    private static final int SNAPSHOT_MAGIC = 0x43435350; // "CCSP"
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    private Path snapshotPath;
+    private ObjectMapper jsonMapper;
+
+    public CommunicateResourceCacheSnapshotFile(Path snapshotPath, ObjectMapper jsonMapper){
+        this.snapshotPath = snapshotPath;
+        this.jsonMapper = jsonMapper;
+    }
+
+    public Path getSnapshotPath() {
+        return snapshotPath;
+    }
+
+    public boolean exists(){
+        return(Files.isRegularFile(snapshotPath));
+    }
+
+    /**
+     * Writes the entries to the snapshot file (replacing any previous snapshot).
+     *
+     * @param entries The entries to be written
+     * @param snapshotInstant The instant to be recorded as the time of the snapshot
+     * @return The number of entries written
+     * @throws IOException If the snapshot could not be written
+     */
+    public int write(Collection<ExtremelySimplifiedResource> entries, Instant snapshotInstant) throws IOException {
+        LOG.debug(".write(): Entry, snapshotPath->{}", snapshotPath);
+        Path snapshotDirectory = snapshotPath.toAbsolutePath().getParent();
+        Files.createDirectories(snapshotDirectory);
+        Path temporaryPath = Files.createTempFile(snapshotDirectory, snapshotPath.getFileName().toString(), ".tmp");
+        int entryCount = 0;
+        try {
+            // The entries are serialised up-front so that the header can carry an accurate count
+            List<byte[]> classNames = new ArrayList<>(entries.size());
+            List<byte[]> payloads = new ArrayList<>(entries.size());
+            for(ExtremelySimplifiedResource currentEntry: entries){
+                classNames.add(currentEntry.getClass().getName().getBytes(StandardCharsets.UTF_8));
+                payloads.add(jsonMapper.writeValueAsBytes(currentEntry));
+            }
+            entryCount = payloads.size();
+            try(OutputStream fileStream = Files.newOutputStream(temporaryPath, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+                DataOutputStream snapshotStream = new DataOutputStream(new BufferedOutputStream(fileStream, WRITE_BUFFER_SIZE))){
+                snapshotStream.writeInt(SNAPSHOT_MAGIC);
+                snapshotStream.writeInt(SNAPSHOT_VERSION);
+                snapshotStream.writeLong(snapshotInstant.toEpochMilli());
+                snapshotStream.writeInt(entryCount);
+                for(int index = 0; index < entryCount; index += 1){
+                    byte[] className = classNames.get(index);
+                    byte[] payload = payloads.get(index);
+                    snapshotStream.writeShort(className.length);
+                    snapshotStream.write(className);
+                    snapshotStream.writeInt(payload.length);
+                    snapshotStream.write(payload);
+                }
+            }
+            Files.move(temporaryPath, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporaryPath);
+        }
+        LOG.debug(".write(): Exit, entryCount->{}", entryCount);
+        return(entryCount);
+    }
+
+    /**
+     * Reads the snapshot file. Entries whose class cannot be resolved (or is not an ExtremelySimplifiedResource)
+     * or whose payload cannot be parsed are skipped (and logged).
+     *
+     * @return The snapshot contents, or null if there is no (valid) snapshot file
+     * @throws IOException If the snapshot file could not be read
+     */
+    public Contents read() throws IOException {
+        LOG.debug(".read(): Entry, snapshotPath->{}", snapshotPath);
+        if(!exists()){
+            LOG.debug(".read(): Exit, no snapshot file");
+            return(null);
+        }
+        try(FileChannel snapshotChannel = FileChannel.open(snapshotPath, StandardOpenOption.READ)){
+            MappedByteBuffer snapshotBuffer = snapshotChannel.map(FileChannel.MapMode.READ_ONLY, 0, snapshotChannel.size());
+            if(snapshotBuffer.remaining() < 20 || snapshotBuffer.getInt() != SNAPSHOT_MAGIC){
+                LOG.warn(".read(): Exit, {} is not a cache snapshot, ignoring it", snapshotPath);
+                return(null);
+            }
+            int version = snapshotBuffer.getInt();
+            if(version != SNAPSHOT_VERSION){
+                LOG.warn(".read(): Exit, {} has unsupported snapshot version {}, ignoring it", snapshotPath, version);
+                return(null);
+            }
+            Instant snapshotInstant = Instant.ofEpochMilli(snapshotBuffer.getLong());
+            int entryCount = snapshotBuffer.getInt();
+            // never trust the (possibly corrupt) count for sizing, each entry occupies at least 6 bytes
+            List<ExtremelySimplifiedResource> entries = new ArrayList<>(Math.max(0, Math.min(entryCount, snapshotBuffer.remaining() / 6)));
+            Map<String, Class<? extends ExtremelySimplifiedResource>> resolvedClasses = new HashMap<>();
+            for(int index = 0; index < entryCount; index += 1){
+                byte[] classNameBytes = new byte[snapshotBuffer.getShort() & 0xFFFF];
+                snapshotBuffer.get(classNameBytes);
+                byte[] payload = new byte[snapshotBuffer.getInt()];
+                snapshotBuffer.get(payload);
+                String className = new String(classNameBytes, StandardCharsets.UTF_8);
+                Class<? extends ExtremelySimplifiedResource> entryClass = resolvedClasses.get(className);
+                if(entryClass == null){
+                    entryClass = resolveEntryClass(className);
+                    if(entryClass == null){
+                        continue;
+                    }
+                    resolvedClasses.put(className, entryClass);
+                }
+                try {
+                    entries.add(jsonMapper.readValue(payload, entryClass));
+                } catch(IOException parseException){
+                    LOG.warn(".read(): Could not parse snapshot entry of type {}, skipping it: {}", className, parseException.getMessage());
+                }
+            }
+            LOG.debug(".read(): Exit, snapshotInstant->{}, entryCount->{}", snapshotInstant, entries.size());
+            return(new Contents(snapshotInstant, entries));
+        } catch(RuntimeException corruptionException){
+            // BufferUnderflowException etc. - a truncated or otherwise corrupt file
+            LOG.warn(".read(): Exit, {} is corrupt, ignoring it: {}", snapshotPath, corruptionException.toString());
+            return(null);
+        }
+    }
+
+    private Class<? extends ExtremelySimplifiedResource> resolveEntryClass(String className){
+        try {
+            Class<?> candidateClass = Class.forName(className, false, ExtremelySimplifiedResource.class.getClassLoader());
+            if(!ExtremelySimplifiedResource.class.isAssignableFrom(candidateClass)){
+                LOG.warn(".resolveEntryClass(): {} is not an ExtremelySimplifiedResource, skipping it", className);
+                return(null);
+            }
+            return(candidateClass.asSubclass(ExtremelySimplifiedResource.class));
+        } catch(ClassNotFoundException notFoundException){
+            LOG.warn(".resolveEntryClass(): Unknown snapshot entry type {}, skipping it", className);
+            return(null);
+        }
+    }
+
+    /**
+     * The contents of a snapshot: the instant it was taken and the entries it held.
+     */
+    public static class Contents {
+        private Instant snapshotInstant;
+        private List<ExtremelySimplifiedResource> entries;
+
+        public Contents(Instant snapshotInstant, List<ExtremelySimplifiedResource> entries){
+            this.snapshotInstant = snapshotInstant;
+            this.entries = entries;
+        }
+
+        public Instant getSnapshotInstant() {
+            return snapshotInstant;
+        }
+
+        public List<ExtremelySimplifiedResource> getEntries() {
+            return entries;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2021 Mark Hunter
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.fhirfactory.pegacorn.communicate.iris.datagrid.entityplane.cache.common;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * A small count-min sketch used to estimate how often a cache key has been requested. Counters saturate
+ * at 15 and are all halved once enough increments have been recorded, so the estimate reflects recent
+ * popularity rather than all-time totals. Estimates are approximate by design (collisions only ever
+ * over-estimate).
+ */
+public class CommunicateResourceFrequencySketch {
+    private static final int SKETCH_DEPTH = 4;
+    private static final int MAXIMUM_FREQUENCY = 15;
+    private static final int MINIMUM_WIDTH = 16;
+    private static final int MAXIMUM_WIDTH = 1 << 20;
+    private static final int RESET_MULTIPLIER = 10;
+    private static final int[] ROW_SEEDS = {0x97cb3127, 0xb3a5ed21, 0x5a3a0a3d, 0x2c1b3c6d};
+
+    private final AtomicIntegerArray counters;
+    private final AtomicInteger additions;
+    private final int width;
+    private final int resetThreshold;
+
+    public CommunicateResourceFrequencySketch(long expectedEntries){
+        long boundedEntries = Math.max(MINIMUM_WIDTH, Math.min(expectedEntries, MAXIMUM_WIDTH));
+        int tableWidth = Integer.highestOneBit((int)boundedEntries);
+        if(tableWidth < boundedEntries){
+            tableWidth = tableWidth << 1;
+        }
+        this.width = tableWidth;
+        this.counters = new AtomicIntegerArray(SKETCH_DEPTH * tableWidth);
+        this.additions = new AtomicInteger(0);
+        this.resetThreshold = RESET_MULTIPLIER * tableWidth;
+    }
+
+    public void increment(Object key){
+        if(key == null){
+            return;
+        }
+        int hash = spread(key.hashCode());
+        boolean incremented = false;
+        for(int row = 0; row < SKETCH_DEPTH; row++){
+            int counterIndex = counterIndex(hash, row);
+            int currentValue = counters.get(counterIndex);
+            while(currentValue < MAXIMUM_FREQUENCY){
+                if(counters.compareAndSet(counterIndex, currentValue, currentValue + 1)){
+                    incremented = true;
+                    break;
+                }
+                currentValue = counters.get(counterIndex);
+            }
+        }
+        if(incremented && additions.incrementAndGet() >= resetThreshold){
+            reset();
+        }
+    }
+
+    public int frequency(Object key){
+        if(key == null){
+            return(0);
+        }
+        int hash = spread(key.hashCode());
+        int estimate = MAXIMUM_FREQUENCY;
+        for(int row = 0; row < SKETCH_DEPTH; row++){
+            estimate = Math.min(estimate, counters.get(counterIndex(hash, row)));
+        }
+        return(estimate);
+    }
+
+    private synchronized void reset(){
+        if(additions.get() < resetThreshold){
+            // Another thread has already aged the sketch
+            return;
+        }
+        for(int counterIndex = 0; counterIndex < counters.length(); counterIndex++){
+            counters.set(counterIndex, counters.get(counterIndex) >>> 1);
+        }
+        additions.set(additions.get() >>> 1);
+    }
+
+    private int counterIndex(int hash, int row){
+        int rowHash = spread(hash * ROW_SEEDS[row]);
+        return((row * width) + (rowHash & (width - 1)));
+    }
+
+    private static int spread(int hash){
+        hash ^= (hash >>> 16);
+        hash *= 0x45d9f3b;
+        hash ^= (hash >>> 16);
+        return(hash);
+    }
+}
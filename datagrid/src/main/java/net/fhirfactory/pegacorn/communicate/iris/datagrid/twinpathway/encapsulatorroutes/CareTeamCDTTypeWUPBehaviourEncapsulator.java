@@ -24,7 +24,6 @@ package net.fhirfactory.pegacorn.communicate.iris.datagrid.twinpathway.encapsula
 import net.fhirfactory.pegacorn.communicate.iris.datagrid.twinpathway.encapsulatorroutes.beans.CareTeamStimulusRegistrationBean;
 import net.fhirfactory.pegacorn.communicate.iris.datagrid.twinpathway.encapsulatorroutes.beans.CareTeamUoWRegistrationBean;
 import net.fhirfactory.pegacorn.communicate.iris.datagrid.twinpathway.encapsulatorroutes.common.CDTTypeBaseBehaviourEncapsulatorRouteWUP;
-import net.fhirfactory.pegacorn.communicate.iris.datagrid.twinpathway.encapsulatorroutes.common.beans.UoW2StimulusListBean;
 import net.fhirfactory.pegacorn.communicate.iris.datagrid.twinpathway.orchestrator.CareTeamCDTOrchestrator;
 import net.fhirfactory.pegacorn.communicate.iris.datagrid.twinpathway.orchestrator.common.CDTOrchestratorBase;
 import net.fhirfactory.pegacorn.internals.communicate.workflow.model.CDTTypeEnum;
@@ -84,11 +83,7 @@ public class CareTeamCDTTypeWUPBehaviourEncapsulator extends CDTTypeBaseBehaviou
                 .routeId(getRouteElementNameSet().getRouteWUPContainerIngresGateway())
                 .bean(WUPContainerIngresGatekeeper.class, "ingresGatekeeper(*, Exchange," + this.getTopologyNode().getComponentFDN().getToken().getTokenValue() + ")");
 
-        fromWithStandardExceptionHandling(getRouteElementNameSet().getEndPointWUPIngresConduitIngres())
-                .routeId(getRouteElementNameSet().getRouteCoreWUP())
-                .bean(CareTeamUoWRegistrationBean.class, "registerUoW")
-                .split().method(UoW2StimulusListBean.class, "convertUoWContent2StimulusList")
-                .bean(CareTeamStimulusRegistrationBean.class, "registerStimulus");
+        buildCoreWUPRoute(CareTeamUoWRegistrationBean.class, CareTeamStimulusRegistrationBean.class);
 
         // --> Goes into Behaviour Sets
 
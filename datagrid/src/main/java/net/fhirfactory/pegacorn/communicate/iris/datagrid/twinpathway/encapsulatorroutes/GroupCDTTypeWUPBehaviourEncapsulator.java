@@ -24,7 +24,6 @@ package net.fhirfactory.pegacorn.communicate.iris.datagrid.twinpathway.encapsula
 import net.fhirfactory.pegacorn.communicate.iris.datagrid.twinpathway.encapsulatorroutes.beans.GroupStimulusRegistrationBean;
 import net.fhirfactory.pegacorn.communicate.iris.datagrid.twinpathway.encapsulatorroutes.beans.GroupUoWRegistrationBean;
 import net.fhirfactory.pegacorn.communicate.iris.datagrid.twinpathway.encapsulatorroutes.common.CDTTypeBaseBehaviourEncapsulatorRouteWUP;
-import net.fhirfactory.pegacorn.communicate.iris.datagrid.twinpathway.encapsulatorroutes.common.beans.UoW2StimulusListBean;
 import net.fhirfactory.pegacorn.communicate.iris.datagrid.twinpathway.orchestrator.GroupCDTOrchestrator;
 import net.fhirfactory.pegacorn.communicate.iris.datagrid.twinpathway.orchestrator.common.CDTOrchestratorBase;
 import net.fhirfactory.pegacorn.internals.communicate.workflow.model.CDTTypeEnum;
@@ -84,11 +83,7 @@ public class GroupCDTTypeWUPBehaviourEncapsulator extends CDTTypeBaseBehaviourEn
                 .routeId(getRouteElementNameSet().getRouteWUPContainerIngresGateway())
                 .bean(WUPContainerIngresGatekeeper.class, "ingresGatekeeper(*, Exchange," + this.getTopologyNode().getComponentFDN().getToken().getTokenValue() + ")");
 
-        fromWithStandardExceptionHandling(getRouteElementNameSet().getEndPointWUPIngresConduitIngres())
-                .routeId(getRouteElementNameSet().getRouteCoreWUP())
-                .bean(GroupUoWRegistrationBean.class, "registerUoW")
-                .split().method(UoW2StimulusListBean.class, "convertUoWContent2StimulusList")
-                .bean(GroupStimulusRegistrationBean.class, "registerStimulus");
+        buildCoreWUPRoute(GroupUoWRegistrationBean.class, GroupStimulusRegistrationBean.class);
 
         // --> Goes into Behaviour Sets
 
@@ -24,7 +24,6 @@ package net.fhirfactory.pegacorn.communicate.iris.datagrid.twinpathway.encapsula
 import net.fhirfactory.pegacorn.communicate.iris.datagrid.twinpathway.encapsulatorroutes.beans.PractitionerStimulusRegistrationBean;
 import net.fhirfactory.pegacorn.communicate.iris.datagrid.twinpathway.encapsulatorroutes.beans.PractitionerUoWRegistrationBean;
 import net.fhirfactory.pegacorn.communicate.iris.datagrid.twinpathway.encapsulatorroutes.common.CDTTypeBaseBehaviourEncapsulatorRouteWUP;
-import net.fhirfactory.pegacorn.communicate.iris.datagrid.twinpathway.encapsulatorroutes.common.beans.UoW2StimulusListBean;
 import net.fhirfactory.pegacorn.communicate.iris.datagrid.twinpathway.orchestrator.PractitionerCDTOrchestrator;
 import net.fhirfactory.pegacorn.communicate.iris.datagrid.twinpathway.orchestrator.common.CDTOrchestratorBase;
 import net.fhirfactory.pegacorn.internals.communicate.workflow.model.CDTTypeEnum;
@@ -84,11 +83,7 @@ public class PractitionerCDTTypeWUPBehaviourEncapsulator extends CDTTypeBaseBeha
                 .routeId(getRouteElementNameSet().getRouteWUPContainerIngresGateway())
                 .bean(WUPContainerIngresGatekeeper.class, "ingresGatekeeper(*, Exchange," + this.getTopologyNode().getComponentFDN().getToken().getTokenValue() + ")");
 
-        fromWithStandardExceptionHandling(getRouteElementNameSet().getEndPointWUPIngresConduitIngres())
-                .routeId(getRouteElementNameSet().getRouteCoreWUP())
-                .bean(PractitionerUoWRegistrationBean.class, "registerUoW")
-                .split().method(UoW2StimulusListBean.class, "convertUoWContent2StimulusList")
-                .bean(PractitionerStimulusRegistrationBean.class, "registerStimulus");
+        buildCoreWUPRoute(PractitionerUoWRegistrationBean.class, PractitionerStimulusRegistrationBean.class);
 
         // --> Goes into Behaviour Sets
 
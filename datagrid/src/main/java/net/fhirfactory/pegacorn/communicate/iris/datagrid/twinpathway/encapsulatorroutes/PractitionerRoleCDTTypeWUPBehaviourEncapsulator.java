@@ -24,7 +24,6 @@ package net.fhirfactory.pegacorn.communicate.iris.datagrid.twinpathway.encapsula
 import net.fhirfactory.pegacorn.communicate.iris.datagrid.twinpathway.encapsulatorroutes.beans.PractitionerRoleStimulusRegistrationBean;
 import net.fhirfactory.pegacorn.communicate.iris.datagrid.twinpathway.encapsulatorroutes.beans.PractitionerRoleUoWRegistrationBean;
 import net.fhirfactory.pegacorn.communicate.iris.datagrid.twinpathway.encapsulatorroutes.common.CDTTypeBaseBehaviourEncapsulatorRouteWUP;
-import net.fhirfactory.pegacorn.communicate.iris.datagrid.twinpathway.encapsulatorroutes.common.beans.UoW2StimulusListBean;
 import net.fhirfactory.pegacorn.communicate.iris.datagrid.twinpathway.orchestrator.PractitionerCDTOrchestrator;
 import net.fhirfactory.pegacorn.communicate.iris.datagrid.twinpathway.orchestrator.common.CDTOrchestratorBase;
 import net.fhirfactory.pegacorn.internals.communicate.workflow.model.CDTTypeEnum;
@@ -84,11 +83,7 @@ public class PractitionerRoleCDTTypeWUPBehaviourEncapsulator extends CDTTypeBase
                 .routeId(getRouteElementNameSet().getRouteWUPContainerIngresGateway())
                 .bean(WUPContainerIngresGatekeeper.class, "ingresGatekeeper(*, Exchange," + this.getTopologyNode().getComponentFDN().getToken().getTokenValue() + ")");
 
-        fromWithStandardExceptionHandling(getRouteElementNameSet().getEndPointWUPIngresConduitIngres())
-                .routeId(getRouteElementNameSet().getRouteCoreWUP())
-                .bean(PractitionerRoleUoWRegistrationBean.class, "registerUoW")
-                .split().method(UoW2StimulusListBean.class, "convertUoWContent2StimulusList")
-                .bean(PractitionerRoleStimulusRegistrationBean.class, "registerStimulus");
+        buildCoreWUPRoute(PractitionerRoleUoWRegistrationBean.class, PractitionerRoleStimulusRegistrationBean.class);
 
         // --> Goes into Behaviour Sets
 
@@ -26,6 +26,9 @@ import net.fhirfactory.pegacorn.core.model.component.SoftwareComponent;
 import net.fhirfactory.pegacorn.core.model.componentid.ComponentIdType;
 import net.fhirfactory.pegacorn.core.model.componentid.ComponentTypeTypeEnum;
 import net.fhirfactory.pegacorn.core.model.componentid.TopologyNodeFunctionFDNToken;
+import net.fhirfactory.pegacorn.communicate.iris.datagrid.twinpathway.encapsulatorroutes.common.beans.CommunicateResourceReaderRegistry;
+import net.fhirfactory.pegacorn.communicate.iris.datagrid.twinpathway.encapsulatorroutes.common.beans.MTStimulusRegistrationBeanBase;
+import net.fhirfactory.pegacorn.communicate.iris.datagrid.twinpathway.encapsulatorroutes.common.beans.UoWRegistrationBeanBase;
 import net.fhirfactory.pegacorn.communicate.iris.datagrid.twinpathway.orchestrator.common.CDTOrchestratorBase;
 import net.fhirfactory.pegacorn.components.dataparcel.DataParcelManifest;
 import net.fhirfactory.pegacorn.components.interfaces.topology.PegacornTopologyFactoryInterface;
@@ -44,6 +47,7 @@ import net.fhirfactory.pegacorn.core.model.petasos.participant.IntraSubsystemPub
 import net.fhirfactory.pegacorn.core.model.petasos.participant.PubSubParticipant;
 import net.fhirfactory.pegacorn.core.model.petasos.wup.valuesets.WUPArchetypeEnum;
 import org.apache.camel.CamelContext;
+import org.apache.camel.processor.aggregate.GroupedBodyAggregationStrategy;
 import org.slf4j.Logger;
 
 import javax.annotation.PostConstruct;
@@ -75,6 +79,9 @@ public abstract class CDTTypeBaseBehaviourEncapsulatorRouteWUP extends BaseRoute
     @Inject 
     private DataParcelSubscriptionMapIM topicServer;
 
+    @Inject
+    private CommunicateResourceReaderRegistry resourceReaderRegistry;
+
     public CDTTypeBaseBehaviourEncapsulatorRouteWUP() {
         super();
     }
@@ -99,6 +106,8 @@ public abstract class CDTTypeBaseBehaviourEncapsulatorRouteWUP extends BaseRoute
         nameSet = new RouteElementNames(getTopologyNode().getComponentFDN().getToken());
         getLogger().trace(".initialise(): Now call the WUP Framework constructure - which builds the Petasos framework around this WUP");
         buildWUPFramework(this.getContext());
+        getLogger().trace(".initialise(): Building (and warming) the resource readers used to derive Stimulus from the UoW payloads");
+        resourceReaderRegistry.initialiseService();
         getLogger().trace(".initialise(): Now invoking subclass initialising function(s)");
         executePostInitialisationActivities();
         getLogger().debug(".initialise(): Exit");
@@ -132,6 +141,66 @@ public abstract class CDTTypeBaseBehaviourEncapsulatorRouteWUP extends BaseRoute
         // Subclasses can optionally override
     }
 
+    /**
+     * @return true if UoWs should be collected into (size/time bounded) batches before their Stimulus are derived
+     * and registered - useful for bulk (e.g. directory) loads, at the cost of up to specifyIngestionBatchTimeoutMillis()
+     * of added latency per UoW. NOTE: called from configure(), so must return a constant.
+     */
+    protected boolean specifyBatchedIngestion(){
+        return(false);
+    }
+
+    /**
+     * @return The maximum number of UoWs in an ingestion batch (only used if specifyBatchedIngestion() is true)
+     */
+    protected int specifyIngestionBatchSize(){
+        return(500);
+    }
+
+    /**
+     * @return The maximum time (in milliseconds) a partially filled ingestion batch is held before being processed
+     * (only used if specifyBatchedIngestion() is true)
+     */
+    protected long specifyIngestionBatchTimeoutMillis(){
+        return(250);
+    }
+
+    /**
+     * Builds the core WUP route: UoW registration, Stimulus derivation/registration, then completion of the UoW's
+     * Stimulus registration.
+     *
+     * Each UoW is always registered on its own exchange, so that a UoW shed by the orchestrator's admission control
+     * still fails its own exchange. In batched mode the admitted UoWs are then aggregated, and each batch has its
+     * Stimulus derived, registered and completed within a single bean invocation (rather than an exchange per
+     * Stimulus). A failure is reported against the individual UoW (see registerStimulusForUoWBatch()), and any
+     * partially filled batch is completed when the route is stopped - but, being held in memory, a batch that has
+     * not yet closed is lost if the process crashes.
+     *
+     * @param uowRegistrationBean The (twin type specific) UoW registration bean
+     * @param stimulusRegistrationBean The (twin type specific) Stimulus registration bean
+     */
+    protected void buildCoreWUPRoute(Class<? extends UoWRegistrationBeanBase> uowRegistrationBean, Class<? extends MTStimulusRegistrationBeanBase> stimulusRegistrationBean){
+        if(specifyBatchedIngestion()){
+            fromWithStandardExceptionHandling(getRouteElementNameSet().getEndPointWUPIngresConduitIngres())
+                    .routeId(getRouteElementNameSet().getRouteCoreWUP())
+                    .bean(uowRegistrationBean, "registerUoW")
+                    .aggregate(constant(true), new GroupedBodyAggregationStrategy())
+                        .completionSize(Math.max(1, specifyIngestionBatchSize()))
+                        .completionTimeout(Math.max(1L, specifyIngestionBatchTimeoutMillis()))
+                        .forceCompletionOnStop()
+                    .bean(stimulusRegistrationBean, "registerStimulusForUoWBatch")
+                    .end();
+        } else {
+            fromWithStandardExceptionHandling(getRouteElementNameSet().getEndPointWUPIngresConduitIngres())
+                    .routeId(getRouteElementNameSet().getRouteCoreWUP())
+                    .bean(uowRegistrationBean, "registerUoW")
+                    .split().method(stimulusRegistrationBean, "deriveStimulusList")
+                    .bean(stimulusRegistrationBean, "registerStimulus")
+                    .end()
+                    .bean(stimulusRegistrationBean, "completeStimulusRegistration");
+        }
+    }
+
     public void registerNodeInstantiation(){
         getLogger().debug(".registerTopologyElementInstantiation(): Entry");
 //        getOrchestrator().reg(this.topologyNode);
@@ -0,0 +1,152 @@
+/*
+ * Copyright (c) 2021 Mark Hunter
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.fhirfactory.pegacorn.communicate.iris.datagrid.twinpathway.encapsulatorroutes.common.beans;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import net.fhirfactory.pegacorn.communicate.iris.datagrid.twinpathway.orchestrator.common.CDTPayloadEncodingEnum;
+import net.fhirfactory.pegacorn.internals.communicate.entities.careteam.CommunicateCareTeam;
+import net.fhirfactory.pegacorn.internals.communicate.entities.coderesponderteam.CommunicateCodeResponderTeam;
+import net.fhirfactory.pegacorn.internals.communicate.entities.common.valuesets.CommunicateResourceTypeEnum;
+import net.fhirfactory.pegacorn.internals.communicate.entities.group.CommunicateGroup;
+import net.fhirfactory.pegacorn.internals.communicate.entities.healthcareservice.CommunicateHealthcareService;
+import net.fhirfactory.pegacorn.internals.communicate.entities.location.CommunicateLocation;
+import net.fhirfactory.pegacorn.internals.communicate.entities.media.CommunicateMedia;
+import net.fhirfactory.pegacorn.internals.communicate.entities.message.CommunicateMessage;
+import net.fhirfactory.pegacorn.internals.communicate.entities.organization.CommunicateOrganization;
+import net.fhirfactory.pegacorn.internals.communicate.entities.patient.CommunicatePatient;
+import net.fhirfactory.pegacorn.internals.communicate.entities.practitioner.CommunicatePractitioner;
+import net.fhirfactory.pegacorn.internals.communicate.entities.practitionerrole.CommunicatePractitionerRole;
+import net.fhirfactory.pegacorn.internals.communicate.entities.rooms.*;
+import net.fhirfactory.pegacorn.internals.communicate.entities.session.CommunicateSession;
+import net.fhirfactory.pegacorn.internals.communicate.entities.user.CommunicateUser;
+import net.fhirfactory.pegacorn.core.model.ui.resources.simple.common.ExtremelySimplifiedResource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import java.util.EnumMap;
+
+/**
+ * Holds one pre-built ObjectReader per CommunicateResourceTypeEnum (and CDTPayloadEncodingEnum), so that the
+ * (root) deserializer for each resource class is resolved once at startup rather than on every UoW. ObjectReaders
+ * are immutable and thread-safe, so a single instance per type is shared by all the routes.
+ */
+@ApplicationScoped
+public class CommunicateResourceReaderRegistry {
+    private static final Logger LOG = LoggerFactory.getLogger(CommunicateResourceReaderRegistry.class);
+
+    private ObjectMapper jsonMapper;
+    private EnumMap<CDTPayloadEncodingEnum, ObjectMapper> encodingMapperMap;
+    private EnumMap<CDTPayloadEncodingEnum, EnumMap<CommunicateResourceTypeEnum, ObjectReader>> readerMap;
+    private boolean initialised;
+
+    public CommunicateResourceReaderRegistry(){
+        this.jsonMapper = new ObjectMapper();
+        JavaTimeModule module = new JavaTimeModule();
+        this.jsonMapper.registerModule(module);
+        this.jsonMapper.configure(JsonParser.Feature.ALLOW_MISSING_VALUES, true);
+        this.encodingMapperMap = new EnumMap<>(CDTPayloadEncodingEnum.class);
+        this.encodingMapperMap.put(CDTPayloadEncodingEnum.PAYLOAD_ENCODING_JSON, jsonMapper);
+        this.encodingMapperMap.put(CDTPayloadEncodingEnum.PAYLOAD_ENCODING_SMILE, new ObjectMapper(new SmileFactory()).registerModule(new JavaTimeModule()));
+        this.encodingMapperMap.put(CDTPayloadEncodingEnum.PAYLOAD_ENCODING_CBOR, new ObjectMapper(new CBORFactory()).registerModule(new JavaTimeModule()));
+        this.readerMap = new EnumMap<>(CDTPayloadEncodingEnum.class);
+        for(CDTPayloadEncodingEnum currentEncoding: CDTPayloadEncodingEnum.values()){
+            this.readerMap.put(currentEncoding, new EnumMap<>(CommunicateResourceTypeEnum.class));
+        }
+        this.initialised = false;
+    }
+
+    /**
+     * Builds the readers. Each ObjectReader fetches its root deserializer when it is created (Jackson's
+     * EAGER_DESERIALIZER_FETCH, which is on by default), so the per-type introspection cost is paid here.
+     */
+    @PostConstruct
+    protected void initialise(){
+        if(!initialised){
+            LOG.debug(".initialise(): Entry");
+            registerResourceClass(CommunicateResourceTypeEnum.COMMUNICATE_GROUP, CommunicateGroup.class);
+            registerResourceClass(CommunicateResourceTypeEnum.COMMUNICATE_CARETEAM, CommunicateCareTeam.class);
+            registerResourceClass(CommunicateResourceTypeEnum.COMMUNICATE_CODE_RESPONDER_TEAM, CommunicateCodeResponderTeam.class);
+            registerResourceClass(CommunicateResourceTypeEnum.COMMUNICATE_HEALTHCARESERVICE, CommunicateHealthcareService.class);
+            registerResourceClass(CommunicateResourceTypeEnum.COMMUNICATE_LOCATION, CommunicateLocation.class);
+            registerResourceClass(CommunicateResourceTypeEnum.COMMUNICATE_MEDIA, CommunicateMedia.class);
+            registerResourceClass(CommunicateResourceTypeEnum.COMMUNICATE_MESSAGE, CommunicateMessage.class);
+            registerResourceClass(CommunicateResourceTypeEnum.COMMUNICATE_ORGANIZATION, CommunicateOrganization.class);
+            registerResourceClass(CommunicateResourceTypeEnum.COMMUNICATE_PATIENT, CommunicatePatient.class);
+            registerResourceClass(CommunicateResourceTypeEnum.COMMUNICATE_PRACTITIONER, CommunicatePractitioner.class);
+            registerResourceClass(CommunicateResourceTypeEnum.COMMUNICATE_PRACTITIONER_ROLE, CommunicatePractitionerRole.class);
+            registerResourceClass(CommunicateResourceTypeEnum.COMMUNICATE_ROOM, CommunicateRoom.class);
+            registerResourceClass(CommunicateResourceTypeEnum.COMMUNICATE_ROOM_CODE_RESPONDER, CommunicateCodeResponderRoom.class);
+            registerResourceClass(CommunicateResourceTypeEnum.COMMUNICATE_ROOM_HISTORIC, CommunicateHistoricRoom.class);
+            registerResourceClass(CommunicateResourceTypeEnum.COMMUNICATE_ROOM_PATIENT_CENTRAL, CommunicatePatientCentralRoom.class);
+            registerResourceClass(CommunicateResourceTypeEnum.COMMUNICATE_ROOM_PATIENT_CENTRAL_TASK_FULFILLMENT, CommunicatePatientCentricTaskFulfilmentRoom.class);
+            registerResourceClass(CommunicateResourceTypeEnum.COMMUNICATE_ROOM_PRACTITIONER_MY_CALLS, CommunicatePractitionerMyCallsRoom.class);
+            registerResourceClass(CommunicateResourceTypeEnum.COMMUNICATE_ROOM_PRACTITIONER_MY_MEDIA, CommunicatePractitionerMyMediaRoom.class);
+            registerResourceClass(CommunicateResourceTypeEnum.COMMUNICATE_ROOM_PRACTITIONER_ROLE_CENTRAL, CommunicatePractitionerRoleCentralRoom.class);
+            registerResourceClass(CommunicateResourceTypeEnum.COMMUNICATE_ROOM_PRACTITIONER_ROLE_FULFILLMENT, CommunicatePractitionerRoleFulfilmentRoom.class);
+            registerResourceClass(CommunicateResourceTypeEnum.COMMUNICATE_SESSION, CommunicateSession.class);
+            registerResourceClass(CommunicateResourceTypeEnum.COMMUNICATE_USER, CommunicateUser.class);
+            initialised = true;
+            LOG.debug(".initialise(): Exit, registered (JSON) reader count --> {}", readerMap.get(CDTPayloadEncodingEnum.PAYLOAD_ENCODING_JSON).size());
+        }
+    }
+
+    public void initialiseService(){
+        initialise();
+    }
+
+    private void registerResourceClass(CommunicateResourceTypeEnum resourceType, Class<? extends ExtremelySimplifiedResource> resourceClass){
+        for(CDTPayloadEncodingEnum currentEncoding: CDTPayloadEncodingEnum.values()){
+            readerMap.get(currentEncoding).put(resourceType, encodingMapperMap.get(currentEncoding).readerFor(resourceClass));
+        }
+    }
+
+    /**
+     * @param resourceType The type of the resource to be read
+     * @return The (pre-built) JSON reader for the resource type, or null if the type isn't supported
+     */
+    public ObjectReader getJsonReader(CommunicateResourceTypeEnum resourceType){
+        return(getReader(resourceType, CDTPayloadEncodingEnum.PAYLOAD_ENCODING_JSON));
+    }
+
+    /**
+     * @param resourceType The type of the resource to be read
+     * @param encoding The encoding of the content to be read
+     * @return The (pre-built) reader for the resource type and encoding, or null if the type isn't supported
+     */
+    public ObjectReader getReader(CommunicateResourceTypeEnum resourceType, CDTPayloadEncodingEnum encoding){
+        if(resourceType == null || encoding == null){
+            return(null);
+        }
+        return(readerMap.get(encoding).get(resourceType));
+    }
+
+    public ObjectMapper getJsonMapper(){
+        return(jsonMapper);
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2021 Mark Hunter
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.fhirfactory.pegacorn.communicate.iris.datagrid.twinpathway.encapsulatorroutes.common.beans;
+
+import net.fhirfactory.pegacorn.components.dataparcel.DataParcelManifest;
+import net.fhirfactory.pegacorn.components.dataparcel.DataParcelTypeDescriptor;
+import net.fhirfactory.pegacorn.internals.communicate.entities.common.valuesets.CommunicateResourceTypeEnum;
+
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps the content descriptor of a UoW's DataParcelManifest to the CommunicateResourceTypeEnum it carries (or to
+ * "not Communicate"). The descriptor is only read - never copied - and the answer is memoised on its
+ * (definer, category, sub-category, resource) strings, of which there are only ever a handful.
+ */
+public class CommunicateTopicClassifier {
+    private static final int MAXIMUM_MEMOISED_TOPICS = 1024; // Stop memoising beyond this (unexpected) number of distinct topics
+
+    private ConcurrentHashMap<TopicKey, Optional<CommunicateResourceTypeEnum>> topicClassificationMap;
+
+    public CommunicateTopicClassifier(){
+        this.topicClassificationMap = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * @param payloadManifest The manifest of the UoW's (ingres) payload
+     * @return The Communicate resource type of the payload, or null if the payload is not a Communicate resource
+     */
+    public CommunicateResourceTypeEnum classify(DataParcelManifest payloadManifest){
+        if(payloadManifest == null || payloadManifest.getContentDescriptor() == null){
+            return(null);
+        }
+        DataParcelTypeDescriptor descriptor = payloadManifest.getContentDescriptor();
+        TopicKey topicKey = new TopicKey(
+                descriptor.getDataParcelDefiner(),
+                descriptor.getDataParcelCategory(),
+                descriptor.getDataParcelSubCategory(),
+                descriptor.getDataParcelResource());
+        Optional<CommunicateResourceTypeEnum> classification = topicClassificationMap.get(topicKey);
+        if(classification == null){
+            classification = Optional.ofNullable(deriveResourceType(topicKey));
+            if(topicClassificationMap.size() < MAXIMUM_MEMOISED_TOPICS){
+                topicClassificationMap.putIfAbsent(topicKey, classification);
+            }
+        }
+        return(classification.orElse(null));
+    }
+
+    private CommunicateResourceTypeEnum deriveResourceType(TopicKey topicKey){
+        boolean isFHIRFactory = CommunicateResourceTypeEnum.getDataParcelDefiner().contentEquals(String.valueOf(topicKey.definer));
+        boolean isCollaboration = CommunicateResourceTypeEnum.getDataParcelCategory().contentEquals(String.valueOf(topicKey.category));
+        boolean isCommunicate = CommunicateResourceTypeEnum.getDataParcelSubCategory().contentEquals(String.valueOf(topicKey.subCategory));
+        if(isFHIRFactory && isCollaboration && isCommunicate && topicKey.resource != null){
+            return(CommunicateResourceTypeEnum.fromResourceName(topicKey.resource));
+        }
+        return(null);
+    }
+
+    public int getMemoisedTopicCount(){
+        return(topicClassificationMap.size());
+    }
+
+    private static class TopicKey {
+        private final String definer;
+        private final String category;
+        private final String subCategory;
+        private final String resource;
+        private final int hash;
+
+        TopicKey(String definer, String category, String subCategory, String resource){
+            this.definer = definer;
+            this.category = category;
+            this.subCategory = subCategory;
+            this.resource = resource;
+            this.hash = Objects.hash(definer, category, subCategory, resource);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            TopicKey that = (TopicKey) o;
+            return Objects.equals(definer, that.definer) && Objects.equals(category, that.category)
+                    && Objects.equals(subCategory, that.subCategory) && Objects.equals(resource, that.resource);
+        }
+
+        @Override
+        public int hashCode() {
+            return(hash);
+        }
+    }
+}
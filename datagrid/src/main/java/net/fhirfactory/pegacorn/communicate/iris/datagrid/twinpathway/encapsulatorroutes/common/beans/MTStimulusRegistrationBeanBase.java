@@ -22,10 +22,19 @@
 package net.fhirfactory.pegacorn.communicate.iris.datagrid.twinpathway.encapsulatorroutes.common.beans;
 
 import net.fhirfactory.pegacorn.communicate.iris.datagrid.twinpathway.orchestrator.common.CDTOrchestratorBase;
+import net.fhirfactory.pegacorn.communicate.iris.datagrid.twinpathway.orchestrator.common.exceptions.CDTStimulusDerivationException;
+import net.fhirfactory.pegacorn.core.model.petasos.uow.UoW;
 import net.fhirfactory.pegacorn.internals.communicate.workflow.model.stimulus.CDTStimulus;
 import org.slf4j.Logger;
 
+import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.List;
+
 public abstract class MTStimulusRegistrationBeanBase {
+
+	@Inject
+	private UoW2StimulusListBean uow2StimulusListBean;
 	
 	protected abstract CDTOrchestratorBase specifyTwinOrchestrator();
 	protected abstract Logger specifyLogger();
@@ -34,9 +43,71 @@ public abstract class MTStimulusRegistrationBeanBase {
 		return(specifyTwinOrchestrator());
 	}
 	
+	/**
+	 * Derives the UoW's Stimulus (the split expression of the core WUP route). If they cannot all be derived, none
+	 * are registered and the UoW is failed within the orchestrator, rather than being published with some of its
+	 * resources silently dropped.
+	 *
+	 * @param incomingUoW The (already registered) UoW
+	 * @return The derived Stimulus (empty if the UoW was failed)
+	 */
+	public List<CDTStimulus> deriveStimulusList(UoW incomingUoW) {
+		try {
+			return(uow2StimulusListBean.convertUoWContent2StimulusList(incomingUoW));
+		} catch(CDTStimulusDerivationException derivationException) {
+			getTwinOrchestrator().failStimulusRegistration(incomingUoW.getInstanceID(), derivationException.getMessage());
+			return(new ArrayList<CDTStimulus>());
+		}
+	}
+
 	public String registerStimulus(CDTStimulus incomingStimulus) {
 		getTwinOrchestrator().registerNewStimulus(incomingStimulus);
 		return(null);
 	}
+
+	/**
+	 * Called (once per UoW) after all of the UoW's Stimulus have been registered, allowing the orchestrator to
+	 * complete a UoW whose Stimulus matched no Behaviours.
+	 *
+	 * @param registeredUoW The UoW whose Stimulus have all been registered
+	 * @return The UoW
+	 */
+	public UoW completeStimulusRegistration(UoW registeredUoW) {
+		if(registeredUoW != null) {
+			getTwinOrchestrator().completeStimulusRegistration(registeredUoW.getInstanceID());
+		}
+		return(registeredUoW);
+	}
+
+	/**
+	 * Derives and registers the Stimulus of each (already registered) UoW in the batch, then completes the UoW's
+	 * Stimulus registration - i.e. the batched equivalent of the deriveStimulusList split,
+	 * registerStimulus and completeStimulusRegistration steps. The UoWs' own exchanges have already completed, so
+	 * a failure is handled per UoW (the UoW is failed within the orchestrator) rather than failing the batch.
+	 *
+	 * @param uowBatch The UoWs aggregated by the core WUP route
+	 * @return The UoWs
+	 */
+	public List<UoW> registerStimulusForUoWBatch(List<UoW> uowBatch) {
+		if(uowBatch == null) {
+			return(null);
+		}
+		specifyLogger().debug(".registerStimulusForUoWBatch(): Entry, batch size --> {}", uowBatch.size());
+		for(UoW currentUoW: uowBatch) {
+			if(currentUoW == null) {
+				continue;
+			}
+			try {
+				for(CDTStimulus currentStimulus: uow2StimulusListBean.convertUoWContent2StimulusList(currentUoW)) {
+					getTwinOrchestrator().registerNewStimulus(currentStimulus);
+				}
+				getTwinOrchestrator().completeStimulusRegistration(currentUoW.getInstanceID());
+			} catch(RuntimeException registrationException) {
+				specifyLogger().error(".registerStimulusForUoWBatch(): Cannot register Stimulus, UoW --> {}, error --> {}", currentUoW.getInstanceID(), registrationException.toString());
+				getTwinOrchestrator().failStimulusRegistration(currentUoW.getInstanceID(), "Stimulus registration failed: " + registrationException.toString());
+			}
+		}
+		return(uowBatch);
+	}
 	
 }
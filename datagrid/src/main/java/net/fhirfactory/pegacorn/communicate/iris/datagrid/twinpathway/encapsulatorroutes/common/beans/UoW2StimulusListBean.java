@@ -21,34 +21,22 @@
  */
 package net.fhirfactory.pegacorn.communicate.iris.datagrid.twinpathway.encapsulatorroutes.common.beans;
 
-import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.core.JsonParser;
-import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import net.fhirfactory.pegacorn.communicate.iris.datagrid.twinpathway.orchestrator.common.CDTPayloadEncodingEnum;
+import net.fhirfactory.pegacorn.communicate.iris.datagrid.twinpathway.orchestrator.common.exceptions.CDTStimulusDerivationException;
 import net.fhirfactory.pegacorn.components.dataparcel.DataParcelManifest;
 import net.fhirfactory.pegacorn.components.interfaces.topology.ProcessingPlantInterface;
-import net.fhirfactory.pegacorn.internals.communicate.entities.careteam.CommunicateCareTeam;
-import net.fhirfactory.pegacorn.internals.communicate.entities.coderesponderteam.CommunicateCodeResponderTeam;
 import net.fhirfactory.pegacorn.internals.communicate.entities.common.valuesets.CommunicateResourceTypeEnum;
-import net.fhirfactory.pegacorn.internals.communicate.entities.group.CommunicateGroup;
-import net.fhirfactory.pegacorn.internals.communicate.entities.healthcareservice.CommunicateHealthcareService;
-import net.fhirfactory.pegacorn.internals.communicate.entities.location.CommunicateLocation;
-import net.fhirfactory.pegacorn.internals.communicate.entities.media.CommunicateMedia;
-import net.fhirfactory.pegacorn.internals.communicate.entities.message.CommunicateMessage;
-import net.fhirfactory.pegacorn.internals.communicate.entities.organization.CommunicateOrganization;
-import net.fhirfactory.pegacorn.internals.communicate.entities.patient.CommunicatePatient;
-import net.fhirfactory.pegacorn.internals.communicate.entities.practitioner.CommunicatePractitioner;
-import net.fhirfactory.pegacorn.internals.communicate.entities.practitionerrole.CommunicatePractitionerRole;
-import net.fhirfactory.pegacorn.internals.communicate.entities.rooms.*;
-import net.fhirfactory.pegacorn.internals.communicate.entities.session.CommunicateSession;
-import net.fhirfactory.pegacorn.internals.communicate.entities.user.CommunicateUser;
 import net.fhirfactory.pegacorn.internals.communicate.workflow.model.stimulus.CDTStimulus;
 import net.fhirfactory.pegacorn.internals.communicate.workflow.model.stimulus.CDTStimulusIdentifier;
 import net.fhirfactory.pegacorn.core.model.ui.resources.simple.common.ExtremelySimplifiedResource;
 import net.fhirfactory.pegacorn.core.model.petasos.uow.UoW;
+import net.fhirfactory.pegacorn.core.model.petasos.uow.UoWIdentifier;
 import net.fhirfactory.pegacorn.core.model.petasos.uow.UoWPayload;
-import org.apache.commons.lang3.SerializationUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -57,8 +45,11 @@ import javax.inject.Inject;
 import java.io.IOException;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Base64;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  *
@@ -67,168 +58,165 @@ import java.util.List;
 public class UoW2StimulusListBean {
     private static final Logger LOG = LoggerFactory.getLogger(UoW2StimulusListBean.class );
 
-    private ObjectMapper jsonMapper;
+    private static final String BUNDLE_ENTRY_FIELD = "entry";
+    private static final String BUNDLE_ENTRY_RESOURCE_FIELD = "resource";
+
+    private CommunicateTopicClassifier topicClassifier;
 
     public UoW2StimulusListBean(){
     	super();
-    	jsonMapper = new ObjectMapper();
-		JavaTimeModule module = new JavaTimeModule();
-		jsonMapper.registerModule(module);
-    	jsonMapper.configure(JsonParser.Feature.ALLOW_MISSING_VALUES, true);
+    	topicClassifier = new CommunicateTopicClassifier();
 	}
 
-
-
 	@Inject
 	private ProcessingPlantInterface processingPlant;
 
+	@Inject
+	private CommunicateResourceReaderRegistry readerRegistry;
+
 	public ObjectMapper getJsonMapper() {
-		return jsonMapper;
+		return(readerRegistry.getJsonMapper());
 	}
 
 	/**
+	 * Derives the Stimulus carried by the UoW's ingres payload. The payload may be a single Communicate resource,
+	 * a JSON array of them, or a bundle (an object with an "entry" array, of either the resources themselves or of
+	 * {"resource": ...} wrappers, amongst its top-level fields - the others, e.g. resourceType/type, are skipped).
+	 * Arrays and bundles are streamed, so each resource is bound (and its Stimulus identified) as it is reached,
+	 * without materialising the whole document. The payload is
+	 * decoded per the encoding advertised in its manifest (see CDTPayloadEncodingEnum), JSON if none is.
 	 *
-	 * @param incomingUoW
-	 * @return
+	 * @param incomingUoW The UoW
+	 * @return The derived Stimulus (empty if the UoW carries no Communicate resource)
+	 * @throws CDTStimulusDerivationException If the payload cannot be (fully) decoded - no partial list is returned
 	 */
 	public List<CDTStimulus> convertUoWContent2StimulusList(UoW incomingUoW){
         LOG.debug(".convertUoWContent2StimulusList(): Entry, incomingUoW (UoW) --> {}", incomingUoW);
-        List<CDTStimulus> stimulusList = new ArrayList<CDTStimulus>();
-		DataParcelManifest payloadTopicID = SerializationUtils.clone(incomingUoW.getPayloadTopicID());
+		CommunicateResourceTypeEnum resourceType = topicClassifier.classify(incomingUoW.getPayloadTopicID());
+		if (resourceType == null) {
+			return(new ArrayList<CDTStimulus>());
+		}
+		CDTPayloadEncodingEnum encoding = resolvePayloadEncoding(incomingUoW);
+		List<CDTStimulus> stimulusList = deriveStimulusFromUoWPayload(incomingUoW.getIngresContent(), resourceType, encoding, incomingUoW.getInstanceID());
+		LOG.debug(".convertUoWContent2StimulusList(): Exit, stimulus count --> {}", stimulusList.size());
+   		return(stimulusList);
+    }
 
-		boolean isFHIRFactory = false;
-		boolean isCollaboration = false;
-		boolean isCommunicate = false;
+	private CDTPayloadEncodingEnum resolvePayloadEncoding(UoW incomingUoW){
+		DataParcelManifest payloadManifest = incomingUoW.getPayloadTopicID();
+		if(payloadManifest == null || payloadManifest.getContentDescriptor() == null){
+			return(CDTPayloadEncodingEnum.PAYLOAD_ENCODING_JSON);
+		}
+		return(CDTPayloadEncodingEnum.fromDiscriminator(
+				payloadManifest.getContentDescriptor().getDataParcelDiscriminatorType(),
+				payloadManifest.getContentDescriptor().getDataParcelDiscriminatorValue()));
+	}
 
-		if(payloadTopicID.getContentDescriptor().hasDataParcelDefiner()){
-			if(payloadTopicID.getContentDescriptor().getDataParcelDefiner().contentEquals(CommunicateResourceTypeEnum.getDataParcelDefiner())){
-				isFHIRFactory = true;
-			}
+	private List<CDTStimulus> deriveStimulusFromUoWPayload(UoWPayload payload, CommunicateResourceTypeEnum resourceType, CDTPayloadEncodingEnum encoding, UoWIdentifier uowId) {
+		// Keyed on the resource's simplifiedID - if a resource appears more than once, its last occurrence wins
+		LinkedHashMap<String, CDTStimulus> stimulusMap = new LinkedHashMap<>();
+    	String payloadContent = payload.getPayload();
+    	ObjectReader resourceReader = readerRegistry.getReader(resourceType, encoding);
+    	if(resourceReader == null || payloadContent == null){
+    		return(new ArrayList<CDTStimulus>());
 		}
-		if(payloadTopicID.getContentDescriptor().hasDataParcelCategory()){
-			if(payloadTopicID.getContentDescriptor().getDataParcelCategory().contentEquals(CommunicateResourceTypeEnum.getDataParcelCategory())){
-				isCollaboration = true;
+    	// Binary encodings are carried Base64 encoded
+    	byte[] payloadBytes = null;
+    	if(encoding.isBinary()){
+    		try {
+				payloadBytes = Base64.getDecoder().decode(payloadContent);
+			} catch (IllegalArgumentException e) {
+				throw(new CDTStimulusDerivationException("Cannot decode " + encoding.getMediaType() + " payload from UoW " + uowId + ": " + e.getMessage(), e));
 			}
 		}
-		if(payloadTopicID.getContentDescriptor().hasDataParcelSubCategory()){
-			if(payloadTopicID.getContentDescriptor().getDataParcelSubCategory().contentEquals(CommunicateResourceTypeEnum.getDataParcelSubCategory())){
-				isCommunicate = true;
+    	try (JsonParser parser = createPayloadParser(resourceReader, payloadContent, payloadBytes)) {
+			JsonToken firstToken = parser.nextToken();
+			if(firstToken == JsonToken.START_ARRAY){
+				deriveStimulusFromResourceArray(parser, resourceReader, resourceType, uowId, stimulusMap);
+			} else if(firstToken == JsonToken.START_OBJECT){
+				deriveStimulusFromObject(parser, BUNDLE_ENTRY_FIELD, JsonToken.START_ARRAY, resourceReader, resourceType, uowId, stimulusMap);
 			}
+		} catch (IOException e) {
+			// Covers JsonParseException/JsonMappingException - the UoW must fail, not proceed with the Stimulus derived so far
+			LOG.error(".deriveStimulusFromUoWPayload(): Cannot resolve (all) ESRs from UoW, derived (before failure) --> {}, error -> {}", stimulusMap.size(), e.getMessage());
+			throw(new CDTStimulusDerivationException("Cannot resolve (all) ESRs from UoW " + uowId + ": " + e.getMessage(), e));
 		}
-		CDTStimulus stimulus;
-		if(isFHIRFactory && isCollaboration && isCommunicate) {
-			CommunicateResourceTypeEnum resourceType = CommunicateResourceTypeEnum.fromResourceName(payloadTopicID.getContentDescriptor().getDataParcelResource());
-			if (resourceType != null) {
-				stimulus = deriveStimulusFromUoWPayload(incomingUoW.getIngresContent(), resourceType);
-				if (stimulus != null) {
-					stimulus.setOriginalUoW(incomingUoW.getInstanceID());
-					CDTStimulusIdentifier identifier = new CDTStimulusIdentifier();
-					identifier.setId(stimulus.getResource().getSimplifiedID());
-					identifier.setResourceType(resourceType);
-					stimulus.setStimulusID(identifier);
-					stimulusList.add(stimulus);
-				}
+    	return(new ArrayList<CDTStimulus>(stimulusMap.values()));
+	}
+
+	private JsonParser createPayloadParser(ObjectReader resourceReader, String payloadContent, byte[] payloadBytes) throws IOException {
+		if(payloadBytes != null){
+			return(resourceReader.getFactory().createParser(payloadBytes));
+		}
+		return(resourceReader.getFactory().createParser(payloadContent));
+	}
+
+	/**
+	 * Binds each element of the array the parser is positioned at (START_ARRAY), leaving the parser on the
+	 * matching END_ARRAY.
+	 */
+	private void deriveStimulusFromResourceArray(JsonParser parser, ObjectReader resourceReader, CommunicateResourceTypeEnum resourceType, UoWIdentifier uowId, Map<String, CDTStimulus> stimulusMap) throws IOException {
+		JsonToken currentToken = parser.nextToken();
+		while(currentToken != null && currentToken != JsonToken.END_ARRAY){
+			if(currentToken == JsonToken.START_OBJECT){
+				deriveStimulusFromObject(parser, BUNDLE_ENTRY_RESOURCE_FIELD, JsonToken.START_OBJECT, resourceReader, resourceType, uowId, stimulusMap);
+			} else {
+				parser.skipChildren();
 			}
+			currentToken = parser.nextToken();
 		}
-   		return(stimulusList);
-    }
+	}
 
 	/**
-	 *
-	 * @param payload
-	 * @param resourceTypeString
-	 * @return
+	 * Walks the fields of the object the parser is positioned at (START_OBJECT), leaving the parser on the matching
+	 * END_OBJECT. If one of them is the container field (a bundle's "entry" array, or an entry wrapper's "resource"),
+	 * the resource(s) it holds are bound and the object's other fields - wherever they appear - are skipped.
+	 * Otherwise the object is itself the resource, and is bound from the fields buffered along the way, so the
+	 * payload is still only parsed once.
 	 */
-	private CDTStimulus deriveStimulusFromUoWPayload(UoWPayload payload, CommunicateResourceTypeEnum resourceTypeString) {
-		CDTStimulus stimulus = new CDTStimulus();
-    	String payloadContent = payload.getPayload();
-    	ExtremelySimplifiedResource resource = null;
-    	try {
-			switch (resourceTypeString){
-				case COMMUNICATE_GROUP:
-					resource = getJsonMapper().readValue(payloadContent, CommunicateGroup.class);
-					break;
-				case COMMUNICATE_CARETEAM:
-					resource = getJsonMapper().readValue(payloadContent, CommunicateCareTeam.class);
-					break;
-				case COMMUNICATE_CODE_RESPONDER_TEAM:
-					resource = getJsonMapper().readValue(payloadContent, CommunicateCodeResponderTeam.class);
-					break;
-				case COMMUNICATE_HEALTHCARESERVICE:
-					resource = getJsonMapper().readValue(payloadContent, CommunicateHealthcareService.class);
-					break;
-				case COMMUNICATE_LOCATION:
-					resource = getJsonMapper().readValue(payloadContent, CommunicateLocation.class);
-					break;
-				case COMMUNICATE_MEDIA:
-					resource = getJsonMapper().readValue(payloadContent, CommunicateMedia.class);
-					break;
-				case COMMUNICATE_MESSAGE:
-					resource = getJsonMapper().readValue(payloadContent, CommunicateMessage.class);
-					break;
-				case COMMUNICATE_ORGANIZATION:
-					resource = getJsonMapper().readValue(payloadContent, CommunicateOrganization.class);
-					break;
-				case COMMUNICATE_PATIENT:
-					resource = getJsonMapper().readValue(payloadContent, CommunicatePatient.class);
-					break;
-				case COMMUNICATE_PRACTITIONER:
-					resource = getJsonMapper().readValue(payloadContent, CommunicatePractitioner.class);
-					break;
-				case COMMUNICATE_PRACTITIONER_ROLE:
-					resource = getJsonMapper().readValue(payloadContent, CommunicatePractitionerRole.class);
-					break;
-				case COMMUNICATE_ROOM:
-					resource = getJsonMapper().readValue(payloadContent, CommunicateRoom.class);
-					break;
-				case COMMUNICATE_ROOM_CODE_RESPONDER:
-					resource = getJsonMapper().readValue(payloadContent, CommunicateCodeResponderRoom.class);
-					break;
-				case COMMUNICATE_ROOM_HISTORIC:
-					resource = getJsonMapper().readValue(payloadContent, CommunicateHistoricRoom.class);
-					break;
-				case COMMUNICATE_ROOM_PATIENT_CENTRAL:
-					resource = getJsonMapper().readValue(payloadContent, CommunicatePatientCentralRoom.class);
-					break;
-				case COMMUNICATE_ROOM_PATIENT_CENTRAL_TASK_FULFILLMENT:
-					resource = getJsonMapper().readValue(payloadContent, CommunicatePatientCentricTaskFulfilmentRoom.class);
-					break;
-				case COMMUNICATE_ROOM_PRACTITIONER_MY_CALLS:
-					resource = getJsonMapper().readValue(payloadContent, CommunicatePractitionerMyCallsRoom.class);
-					break;
-				case COMMUNICATE_ROOM_PRACTITIONER_MY_MEDIA:
-					resource = getJsonMapper().readValue(payloadContent, CommunicatePractitionerMyMediaRoom.class);
-					break;
-				case COMMUNICATE_ROOM_PRACTITIONER_ROLE_CENTRAL:
-					resource = getJsonMapper().readValue(payloadContent, CommunicatePractitionerRoleCentralRoom.class);
-					break;
-				case COMMUNICATE_ROOM_PRACTITIONER_ROLE_FULFILLMENT:
-					resource = getJsonMapper().readValue(payloadContent, CommunicatePractitionerRoleFulfilmentRoom.class);
-					break;
-				case COMMUNICATE_SESSION:
-					resource = getJsonMapper().readValue(payloadContent, CommunicateSession.class);
-					break;
-				case COMMUNICATE_USER:
-					resource = getJsonMapper().readValue(payloadContent, CommunicateUser.class);
-					break;
-				default:
-					resource = null;
-					break;
+	private void deriveStimulusFromObject(JsonParser parser, String containerFieldName, JsonToken containerToken, ObjectReader resourceReader, CommunicateResourceTypeEnum resourceType, UoWIdentifier uowId, Map<String, CDTStimulus> stimulusMap) throws IOException {
+		TokenBuffer resourceBuffer = new TokenBuffer(parser);
+		resourceBuffer.writeStartObject();
+		boolean containerFound = false;
+		while(parser.nextToken() == JsonToken.FIELD_NAME){
+			String fieldName = parser.getCurrentName();
+			JsonToken valueToken = parser.nextToken();
+			if(valueToken == containerToken && containerFieldName.equals(fieldName)){
+				containerFound = true;
+				if(containerToken == JsonToken.START_ARRAY){
+					deriveStimulusFromResourceArray(parser, resourceReader, resourceType, uowId, stimulusMap);
+				} else {
+					addStimulus(resourceReader.readValue(parser), resourceType, uowId, stimulusMap);
+				}
+			} else if(containerFound){
+				parser.skipChildren();
+			} else {
+				resourceBuffer.writeFieldName(fieldName);
+				resourceBuffer.copyCurrentStructure(parser);
 			}
-		} catch (JsonMappingException e) {
-    		LOG.error(".getESRFromUoWPayload(): Cannot resolve ESR from UoW, (JsonMappingException) error -> {}", e.getMessage());
-		} catch (JsonParseException e) {
-			LOG.error(".getESRFromUoWPayload(): Cannot resolve ESR from UoW, (JsonParseException) error -> {}", e.getMessage());
-		} catch (IOException e) {
-			LOG.error(".getESRFromUoWPayload(): Cannot resolve ESR from UoW, (IOException) error -> {}", e.getMessage());
 		}
-    	if(resource != null){
-			stimulus.setResource(resource);
-			stimulus.setCreationDate(Date.from(Instant.now()));
-			return(stimulus);
+		if(!containerFound){
+			resourceBuffer.writeEndObject();
+			try (JsonParser bufferedParser = resourceBuffer.asParser()) {
+				addStimulus(resourceReader.readValue(bufferedParser), resourceType, uowId, stimulusMap);
+			}
 		}
-    	return(null);
 	}
 
+	private void addStimulus(ExtremelySimplifiedResource resource, CommunicateResourceTypeEnum resourceType, UoWIdentifier uowId, Map<String, CDTStimulus> stimulusMap){
+		if(resource == null){
+			return;
+		}
+		CDTStimulus stimulus = new CDTStimulus();
+		stimulus.setResource(resource);
+		stimulus.setCreationDate(Date.from(Instant.now()));
+		stimulus.setOriginalUoW(uowId);
+		CDTStimulusIdentifier identifier = new CDTStimulusIdentifier();
+		identifier.setId(resource.getSimplifiedID());
+		identifier.setResourceType(resourceType);
+		stimulus.setStimulusID(identifier);
+		stimulusMap.remove(String.valueOf(resource.getSimplifiedID()));
+		stimulusMap.put(String.valueOf(resource.getSimplifiedID()), stimulus);
+	}
 
 }
@@ -52,6 +52,8 @@ public abstract class UoWRegistrationBeanBase {
 	}
 
 	/**
+	 * Registers the UoW with the orchestrator. If the orchestrator is already at its maximum number of in-flight
+	 * UoWs, a CDTIngresBackpressureException is thrown, failing the exchange so that the UoW is not buffered.
 	 *
 	 * @param workPacket
 	 * @param camelExchange
@@ -23,10 +23,14 @@ package net.fhirfactory.pegacorn.communicate.iris.datagrid.twinpathway.orchestra
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import net.fhirfactory.pegacorn.communicate.iris.datagrid.twinpathway.forwardermap.CDTInstance2EdgeForwarderMap;
 import net.fhirfactory.pegacorn.communicate.iris.datagrid.twinpathway.orchestrator.common.caches.*;
+import net.fhirfactory.pegacorn.communicate.iris.datagrid.twinpathway.orchestrator.common.exceptions.CDTIngresBackpressureException;
 import net.fhirfactory.pegacorn.core.interfaces.topology.ProcessingPlantInterface;
 import net.fhirfactory.pegacorn.core.model.component.SoftwareComponent;
 import net.fhirfactory.pegacorn.core.model.dataparcel.DataParcelManifest;
@@ -51,17 +55,20 @@ import net.fhirfactory.pegacorn.core.model.petasos.uow.UoWPayload;
 import net.fhirfactory.pegacorn.core.model.petasos.uow.UoWProcessingOutcomeEnum;
 import net.fhirfactory.pegacorn.util.FHIRContextUtility;
 import org.apache.camel.CamelContext;
-import org.apache.camel.ProducerTemplate;
 import org.slf4j.Logger;
 
 import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.annotation.Resource;
 import javax.enterprise.concurrent.ManagedScheduledExecutorService;
 import javax.inject.Inject;
 import java.time.Instant;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import net.fhirfactory.pegacorn.core.model.componentid.TopologyNodeFDN;
 import net.fhirfactory.pegacorn.core.model.componentid.TopologyNodeFDNToken;
 
@@ -69,20 +76,34 @@ public abstract class CDTOrchestratorBase {
 
     private ConcurrentHashMap<CDTBehaviourIdentifier, CDTBehaviourCentricInclusionFilterRulesInterface> inclusionFilterMap;
     private ConcurrentHashMap<CDTBehaviourIdentifier, CDTBehaviourCentricExclusionFilterRulesInterface> exclusionFilterMap;
-    private ConcurrentHashMap<CDTIdentifier, CDTBehaviourIdentifier> twinInstanceBusyStatus;
     private List<DataParcelManifest> subscribedTopicList;
     private ConcurrentHashMap<CDTBehaviourIdentifier, SoftwareComponent> behaviourSet;
     private CDTUoWCache uowCacheMT;
     private CDTStimulusCache CDTStimulusCache;
-    private CDTInstanceWorkQueues twinWorkQueues;
+    private CDTWorkerLanes workerLanes;
+    private CDTAdmissionController admissionController;
+    private CDTBehaviourLatencyStatistics behaviourLatencyStatistics;
+    private ConcurrentHashMap<UoWIdentifier, String> uowFailureDescriptions;
+    private AtomicLong poolEvictionCount;
     private CDTCausalityMapCache causalityMap;
 	private CDTOutcomeCache CDTOutcomeCache;
+	private CDTProducerEndpointCache producerEndpointCache;
+	private CDTResolvedRouteRegistry resolvedRouteRegistry;
+	private CDTStimulusRoutingIndex stimulusRoutingIndex;
+	private ForkJoinPool filterEvaluationPool;
 	private SoftwareComponent associatedBehaviourEncapsulatorNode;
 	private boolean initialised;
 	private ObjectMapper jsonObjectMapper;
+	private ObjectWriter compactJsonWriter;
+	private CDTPayloadEncodingEnum intraSubsystemPayloadEncoding;
+	private ObjectWriter intraSubsystemPayloadWriter;
+	private CDTEgressManifestCache egressManifestCache;
     
     static final long INITIAL_DELAY = 1000; // Delay (in Milliseconds) before scanning of the Per-Instance Activity Queue occurs
     static final long DELAY = 500; // Delay (in Milliseconds) between scans of the Per-Instance Activity Queue
+    static final long FALLBACK_DELAY = 5000; // Delay (in Milliseconds) between (fallback) scans when dispatch is event-driven
+    static final long LEASE_WATCHDOG_DELAY = 5000; // Delay (in Milliseconds) between scans for expired Twin Instance leases
+    static final long LIFECYCLE_SWEEP_DELAY = 60000; // Delay (in Milliseconds) between scans for UoW/Stimulus/Outcome entries past their deadline (or in excess of their pool's maximum size)
 
     @Inject
     private ProcessingPlantInterface processingPlant;
@@ -111,15 +132,21 @@ public abstract class CDTOrchestratorBase {
     public CDTOrchestratorBase(){
         this.inclusionFilterMap = new ConcurrentHashMap<>();
         this.exclusionFilterMap = new ConcurrentHashMap<>();
-        this.twinInstanceBusyStatus = new ConcurrentHashMap<>();
         this.subscribedTopicList = new ArrayList<>();
-        this.twinWorkQueues = new CDTInstanceWorkQueues();
-        this.twinInstanceBusyStatus = new ConcurrentHashMap<>();
+        this.workerLanes = null;
+        this.admissionController = null;
+        this.behaviourLatencyStatistics = new CDTBehaviourLatencyStatistics();
+        this.uowFailureDescriptions = new ConcurrentHashMap<>();
+        this.poolEvictionCount = new AtomicLong(0);
         this.uowCacheMT = new CDTUoWCache();
         this.CDTStimulusCache = new CDTStimulusCache();
         this.behaviourSet = new ConcurrentHashMap<>();
 		this.causalityMap = new CDTCausalityMapCache();
 		this.CDTOutcomeCache = new CDTOutcomeCache();
+		this.producerEndpointCache = new CDTProducerEndpointCache();
+		this.resolvedRouteRegistry = new CDTResolvedRouteRegistry();
+		this.stimulusRoutingIndex = new CDTStimulusRoutingIndex();
+		this.filterEvaluationPool = null;
 		this.associatedBehaviourEncapsulatorNode = null;
 		this.initialised = false;
 		//
@@ -127,6 +154,10 @@ public abstract class CDTOrchestratorBase {
 		JavaTimeModule module = new JavaTimeModule();
 		jsonObjectMapper.registerModule(module);
 		this.jsonObjectMapper.configure(SerializationFeature.INDENT_OUTPUT, true);
+		this.compactJsonWriter = jsonObjectMapper.writer().without(SerializationFeature.INDENT_OUTPUT);
+		this.intraSubsystemPayloadEncoding = null;
+		this.intraSubsystemPayloadWriter = null;
+		this.egressManifestCache = new CDTEgressManifestCache();
     }
 
 	public ObjectMapper getJsonObjectMapper() {
@@ -136,12 +167,43 @@ public abstract class CDTOrchestratorBase {
 	@PostConstruct
     protected void initialise(){
     	if(!initialised) {
+			// Built here (not in the constructor) so that the specify*() overrides can rely on sub-type state
+			this.workerLanes = new CDTWorkerLanes(specifyWorkerLaneCount());
+			this.admissionController = new CDTAdmissionController(specifyMaximumInFlightUoWs(), specifyMaximumTwinQueueDepth(), specifyAdmissionWaitMillis());
+			this.intraSubsystemPayloadEncoding = specifyIntraSubsystemPayloadEncoding();
+			this.intraSubsystemPayloadWriter = buildPayloadWriter(intraSubsystemPayloadEncoding);
 			processingPlant.initialisePlant();
-			this.scheduler.scheduleAtFixedRate(this::manifestor, INITIAL_DELAY, DELAY, TimeUnit.MILLISECONDS);
+			// Each lane gets its own manifestor, so the lanes are swept in parallel
+			long manifestorDelay = DELAY;
+			if(specifyEventDrivenDispatch()) {
+				// Dispatch is triggered on enqueue/completion, the manifestors just sweep up anything missed
+				manifestorDelay = FALLBACK_DELAY;
+			}
+			for(int laneIndex = 0; laneIndex < workerLanes.getLaneCount(); laneIndex++) {
+				CDTWorkerLanes.WorkerLane currentLane = workerLanes.getLane(laneIndex);
+				this.scheduler.scheduleAtFixedRate(() -> manifestor(currentLane), INITIAL_DELAY, manifestorDelay, TimeUnit.MILLISECONDS);
+			}
+			if(specifyTwinLeaseTimeoutMillis() > 0) {
+				this.scheduler.scheduleAtFixedRate(this::leaseWatchdog, INITIAL_DELAY, LEASE_WATCHDOG_DELAY, TimeUnit.MILLISECONDS);
+			}
+			if(specifyUoWProcessingDeadlineMillis() > 0 || hasMaximumPoolSizes()) {
+				this.scheduler.scheduleAtFixedRate(this::expireOverdueEntries, LIFECYCLE_SWEEP_DELAY, LIFECYCLE_SWEEP_DELAY, TimeUnit.MILLISECONDS);
+			}
+			if(specifyParallelFilterEvaluation()){
+				this.filterEvaluationPool = new ForkJoinPool(Math.max(1, specifyFilterEvaluationParallelism()));
+			}
 			initialised = true;
 		}
     }
 
+	@PreDestroy
+	protected void shutdown(){
+		producerEndpointCache.shutdown();
+		if(filterEvaluationPool != null){
+			filterEvaluationPool.shutdown();
+		}
+	}
+
     protected Logger getLogger(){
     return(specifyLogger());
     }
@@ -167,7 +229,46 @@ public abstract class CDTOrchestratorBase {
 	// Stage 1
 
 	public void registerNewUoW(UoW newUoW, PetasosTaskJobCard jobCard, ParcelStatusElement statusElement, TopologyNodeFDN wupKey){
+		if(!admissionController.admitUoW(newUoW.getInstanceID())){
+			getLogger().warn(".registerNewUoW(): Shedding UoW, maximum in-flight UoWs ({}) reached, UoW --> {}", admissionController.getMaximumInFlightUoWs(), newUoW.getInstanceID());
+			throw(new CDTIngresBackpressureException("Maximum in-flight UoWs (" + admissionController.getMaximumInFlightUoWs() + ") reached, UoW " + newUoW.getInstanceID() + " not admitted"));
+		}
 		uowCacheMT.addUoW(newUoW, jobCard, statusElement, wupKey );
+		causalityMap.openStimulusRegistration(newUoW.getInstanceID());
+		// Resolve the WUP's egress route now (only the first UoW from each WUP pays for this)
+		resolvedRouteRegistry.getOrResolveWUPEgressURI(wupKey, this::resolveWUPEgressURI);
+	}
+
+	/**
+	 * Called once all of the UoW's Stimulus have been registered (i.e. at the end of the split in the core WUP
+	 * route). If none of the Stimulus were fanned-out to a twin - or all that were have already completed - the
+	 * UoW is aggregated and published straight away.
+	 *
+	 * @param uowId The UoW
+	 */
+	public void completeStimulusRegistration(UoWIdentifier uowId){
+		if(uowId == null){
+			return;
+		}
+		if(causalityMap.closeStimulusRegistration(uowId)){
+			aggregateAndPublishOutcomes(uowId);
+		}
+	}
+
+	/**
+	 * Called instead of completeStimulusRegistration() when the UoW's Stimulus could not (all) be derived or
+	 * registered. The UoW is published as failed once any Stimulus already registered have been processed.
+	 *
+	 * @param uowId The UoW
+	 * @param failureDescription Why the Stimulus registration failed
+	 */
+	public void failStimulusRegistration(UoWIdentifier uowId, String failureDescription){
+		if(uowId == null){
+			return;
+		}
+		getLogger().warn(".failStimulusRegistration(): UoW --> {}, failureDescription --> {}", uowId, failureDescription);
+		uowFailureDescriptions.putIfAbsent(uowId, failureDescription);
+		completeStimulusRegistration(uowId);
 	}
 
 	// Stage 2 & 3
@@ -180,134 +281,429 @@ public abstract class CDTOrchestratorBase {
 	// Stage 3
 
 	public void stimulusFeeder2DigitalTwin(CDTStimulus newStimulus){
-		Enumeration<CDTBehaviourIdentifier> behaviourList = inclusionFilterMap.keys();
-		while(behaviourList.hasMoreElements()) {
-			CDTBehaviourIdentifier currentBehaviour = behaviourList.nextElement();
-			CDTBehaviourCentricInclusionFilterRulesInterface inclusionFilter = inclusionFilterMap.get(currentBehaviour);
-			List<CDTIdentifier> digitalTwinIdentifiers = inclusionFilter.positiveDynamicFilterTwinInstancesForStimulus(newStimulus);
-			for(CDTIdentifier currentTwin: digitalTwinIdentifiers){
-				boolean allowStimulusToProgress = true;
-				if(exclusionFilterMap.containsKey(currentBehaviour)){
-					CDTBehaviourCentricExclusionFilterRulesInterface exclusionFilter = exclusionFilterMap.get(currentBehaviour);
-					if(!exclusionFilter.blockStimulusForDigitalTwinInstance(newStimulus, currentTwin)){
-						allowStimulusToProgress = false;
-					}
-				}
-				if(allowStimulusToProgress){
-					CDTStimulusPackage newStimulusPackage = new CDTStimulusPackage(newStimulus.getOriginalUoW(), currentTwin, currentBehaviour, newStimulus);
-					twinWorkQueues.addStimulus2Queue(currentTwin, newStimulusPackage);
+		List<CDTStimulusRoutingIndex.CDTStimulusFanOutTarget> fanOut = deriveStimulusFanOut(newStimulus);
+		// The Stimulus is queued for all of its twins, or (if any of their queues is full) for none of them
+		for(CDTStimulusRoutingIndex.CDTStimulusFanOutTarget currentTarget: fanOut){
+			CDTIdentifier currentTwin = currentTarget.getTwinId();
+			int currentQueueDepth = workerLanes.getLane(currentTwin).getWorkQueues().getStimulusCount(currentTwin);
+			if(!admissionController.admitStimulusForTwin(currentQueueDepth)){
+				getLogger().warn(".stimulusFeeder2DigitalTwin(): Shedding Stimulus, queue for twin {} is full (depth --> {}), UoW --> {}", currentTwin, currentQueueDepth, newStimulus.getOriginalUoW());
+				admissionController.recordShedStimulus(newStimulus.getOriginalUoW());
+				return;
+			}
+		}
+		for(CDTStimulusRoutingIndex.CDTStimulusFanOutTarget currentTarget: fanOut){
+			CDTBehaviourIdentifier currentBehaviour = currentTarget.getBehaviourId();
+			CDTIdentifier currentTwin = currentTarget.getTwinId();
+			CDTStimulusPackage newStimulusPackage = new CDTStimulusPackage(newStimulus.getOriginalUoW(), currentTwin, currentBehaviour, newStimulus);
+			causalityMap.associateBehaviour2DigitalTwin2Stimulus2UoW(currentBehaviour, currentTwin, newStimulus.getStimulusID(), newStimulus.getOriginalUoW());
+			workerLanes.getLane(currentTwin).queueStimulusPackage(currentTwin, newStimulusPackage, newStimulus.getStimulusID(), newStimulus.getOriginalUoW());
+			triggerDispatch(currentTwin);
+		}
+	}
+
+	/**
+	 * Works out which (Behaviour, DigitalTwin) pairs the Stimulus should be delivered to. Only the Behaviours
+	 * that registered an interest in the Stimulus's resource type (or in any type) have their filters evaluated.
+	 *
+	 * @param newStimulus The Stimulus
+	 * @return The (Behaviour, DigitalTwin) targets, in Behaviour registration order
+	 */
+	protected List<CDTStimulusRoutingIndex.CDTStimulusFanOutTarget> deriveStimulusFanOut(CDTStimulus newStimulus){
+		CDTStimulusIdentifier stimulusId = newStimulus.getStimulusID();
+		long fanOutCacheTTL = specifyStimulusFanOutCacheTTL();
+		List<CDTStimulusRoutingIndex.CDTStimulusFanOutTarget> cachedFanOut = stimulusRoutingIndex.getCachedFanOut(stimulusId, fanOutCacheTTL);
+		if(cachedFanOut != null){
+			return(cachedFanOut);
+		}
+		CommunicateResourceTypeEnum stimulusType = null;
+		if(stimulusId != null){
+			stimulusType = stimulusId.getResourceType();
+		}
+		List<CDTBehaviourIdentifier> candidateBehaviours = stimulusRoutingIndex.getCandidateBehaviours(stimulusType);
+		List<CDTStimulusRoutingIndex.CDTStimulusFanOutTarget> fanOut = new ArrayList<>();
+		ForkJoinPool evaluationPool = this.filterEvaluationPool;
+		if(evaluationPool != null && candidateBehaviours.size() > 1){
+			// Evaluate each behaviour's filters concurrently, but join (and so merge) them in registration order,
+			// so the order in which each twin's queue receives its StimulusPackages is the same as in sequential mode
+			List<ForkJoinTask<List<CDTStimulusRoutingIndex.CDTStimulusFanOutTarget>>> evaluationTasks = new ArrayList<>(candidateBehaviours.size());
+			for(CDTBehaviourIdentifier currentBehaviour: candidateBehaviours){
+				evaluationTasks.add(evaluationPool.submit(() -> evaluateBehaviourFilters(currentBehaviour, newStimulus)));
+			}
+			for(ForkJoinTask<List<CDTStimulusRoutingIndex.CDTStimulusFanOutTarget>> currentTask: evaluationTasks){
+				fanOut.addAll(currentTask.join());
+			}
+		} else {
+			for(CDTBehaviourIdentifier currentBehaviour: candidateBehaviours){
+				fanOut.addAll(evaluateBehaviourFilters(currentBehaviour, newStimulus));
+			}
+		}
+		if(fanOutCacheTTL > 0){
+			stimulusRoutingIndex.cacheFanOut(stimulusId, fanOut);
+		}
+		return(fanOut);
+	}
+
+	/**
+	 * Runs a single Behaviour's inclusion (and then exclusion) filters against the Stimulus.
+	 *
+	 * @param currentBehaviour The Behaviour
+	 * @param newStimulus The Stimulus
+	 * @return The (Behaviour, DigitalTwin) targets for this Behaviour (empty if none)
+	 */
+	private List<CDTStimulusRoutingIndex.CDTStimulusFanOutTarget> evaluateBehaviourFilters(CDTBehaviourIdentifier currentBehaviour, CDTStimulus newStimulus){
+		List<CDTStimulusRoutingIndex.CDTStimulusFanOutTarget> behaviourFanOut = new ArrayList<>();
+		CDTBehaviourCentricInclusionFilterRulesInterface inclusionFilter = inclusionFilterMap.get(currentBehaviour);
+		if(inclusionFilter == null){
+			return(behaviourFanOut);
+		}
+		long evaluationStart = System.nanoTime();
+		List<CDTIdentifier> digitalTwinIdentifiers = inclusionFilter.positiveDynamicFilterTwinInstancesForStimulus(newStimulus);
+		CDTBehaviourCentricExclusionFilterRulesInterface exclusionFilter = exclusionFilterMap.get(currentBehaviour);
+		for(CDTIdentifier currentTwin: digitalTwinIdentifiers){
+			boolean allowStimulusToProgress = true;
+			if(exclusionFilter != null){
+				if(!exclusionFilter.blockStimulusForDigitalTwinInstance(newStimulus, currentTwin)){
+					allowStimulusToProgress = false;
 				}
 			}
+			if(allowStimulusToProgress){
+				behaviourFanOut.add(new CDTStimulusRoutingIndex.CDTStimulusFanOutTarget(currentBehaviour, currentTwin));
+			}
 		}
+		stimulusRoutingIndex.recordFilterEvaluation(currentBehaviour, System.nanoTime() - evaluationStart);
+		return(behaviourFanOut);
 	}
 
 	// Stage 4 & 5
 
 	public void manifestor(){
-		Set<CDTIdentifier> twinsWithQueuedTraffic = twinWorkQueues.getTwinsWithQueuedWork();
+		for(int laneIndex = 0; laneIndex < workerLanes.getLaneCount(); laneIndex++){
+			manifestor(workerLanes.getLane(laneIndex));
+		}
+	}
+
+	protected void manifestor(CDTWorkerLanes.WorkerLane lane){
+		Set<CDTIdentifier> twinsWithQueuedTraffic = lane.getTwinsWithPendingWork();
 		for(CDTIdentifier currentTwinInstance : twinsWithQueuedTraffic){
-			// Check to see if the DigitalTwin is BUSY by checking the instaanceBusyStatus map.
-			if(!twinInstanceBusyStatus.containsKey(currentTwinInstance)) {
-				// DigitalTwin isn't busy - so let's give it something to do...
-				CDTStimulusPackage nextStimulusForTwinInstance = twinWorkQueues.getNextStimulusPackage(currentTwinInstance);
-				twinInstanceBusyStatus.put(currentTwinInstance, nextStimulusForTwinInstance.getTargetBehaviour());
-				injectStimulusPackageIntoBehaviourQueue(nextStimulusForTwinInstance.getTargetBehaviour(), nextStimulusForTwinInstance );
-				lockTwinInstance(currentTwinInstance, nextStimulusForTwinInstance.getTargetBehaviour());
-			}
+			dispatchNextStimulusPackage(currentTwinInstance);
+		}
+	}
+
+	/**
+	 * If the DigitalTwin isn't busy, give it the next StimulusPackage from its queue. The twin is claimed
+	 * (marked busy) atomically as the package is taken from the queue, so the enqueue/completion triggers
+	 * and the manifestor can all call this concurrently without double-dispatching to a twin.
+	 *
+	 * @param twinInstance The Twin Instance to dispatch to
+	 * @return true if a StimulusPackage was dispatched
+	 */
+	public boolean dispatchNextStimulusPackage(CDTIdentifier twinInstance){
+		if(twinInstance == null){
+			return(false);
+		}
+		CDTWorkerLanes.WorkerLane lane = workerLanes.getLane(twinInstance);
+		// Check to see if the DigitalTwin is BUSY by checking the (lane's) instanceBusyStatus map.
+		if(lane.getBusyStatus().containsKey(twinInstance)){
+			return(false);
+		}
+		long leaseTimeoutMillis = specifyTwinLeaseTimeoutMillis();
+		CDTTwinLease[] claimedLease = new CDTTwinLease[1];
+		lane.getBusyStatus().computeIfAbsent(twinInstance, twin -> {
+			claimedLease[0] = lane.takeNextLease(twin, leaseTimeoutMillis);
+			return(claimedLease[0]);
+		});
+		CDTTwinLease newLease = claimedLease[0];
+		if(newLease == null){
+			return(false);
+		}
+		// DigitalTwin wasn't busy (and is now leased) - so let's give it something to do...
+		CDTStimulusPackage nextStimulusForTwinInstance = newLease.getStimulusPackage();
+		injectStimulusPackageIntoBehaviourQueue(nextStimulusForTwinInstance.getTargetBehaviour(), nextStimulusForTwinInstance );
+		return(true);
+	}
+
+	/**
+	 * In event-driven mode, schedule an (immediate) dispatch attempt for the twin on the managed executor, so
+	 * that the enqueuing/completing thread isn't the one that runs the behaviour.
+	 */
+	protected void triggerDispatch(CDTIdentifier twinInstance){
+		if(!specifyEventDrivenDispatch() || twinInstance == null){
+			return;
 		}
+		if(isTwinLocked(twinInstance)){
+			// Busy - the completion of the current behaviour will trigger the next dispatch
+			return;
+		}
+		this.scheduler.execute(() -> dispatchNextStimulusPackage(twinInstance));
 	}
 
 	// Stage 5
 
 	private void injectStimulusPackageIntoBehaviourQueue(CDTBehaviourIdentifier behaviourId, CDTStimulusPackage stimulusPkg) {
 		getLogger().debug(".injectStimulusPackageIntoBehaviourQueue(): Entry, BehaviourIdentifier --> {}, StimulusPackage --> {}", behaviourId, stimulusPkg);
-		if(!behaviourSet.containsKey(behaviourId)) {
+		String behaviourIngresURI = resolvedRouteRegistry.getBehaviourIngresURI(behaviourId);
+		if(behaviourIngresURI == null) {
 			return;
 		}
-		SoftwareComponent behaviourNode = behaviourSet.get(behaviourId);
-		RouteElementNames nameSet = new RouteElementNames(behaviourNode.getComponentFDN().getToken());
-		ProducerTemplate prodTemplate = camelCTX.createProducerTemplate();
-		prodTemplate.sendBody(nameSet.getEndPointWUPContainerIngresProcessorIngres(), stimulusPkg);
+		producerEndpointCache.sendBody(camelCTX, behaviourIngresURI, stimulusPkg);
 	}
 
 
 	// Stage 7
 
+	/**
+	 * Registers a Behaviour's outcomes without identifying the StimulusPackage they were produced for. The twin's
+	 * lease is matched on the outcomes' source Behaviour/Stimulus - so, with lease expiry enabled, a completion
+	 * with no outcomes cannot release the lease (it is left to the watchdog). Behaviours should prefer
+	 * registerBehaviourCompletion(CDTStimulusPackage, CDTBehaviourOutcomeSet).
+	 *
+	 * @param outcomes The Behaviour's outcomes
+	 */
 	public void registerBehaviourCompletion(CDTBehaviourOutcomeSet outcomes){
+		registerBehaviourCompletion(null, outcomes);
+	}
+
+	/**
+	 * Registers a Behaviour's outcomes for the StimulusPackage it was dispatched, releasing the twin's lease only
+	 * if it is (still) held for that exact StimulusPackage.
+	 *
+	 * @param completedPackage The StimulusPackage the Behaviour was dispatched (null if unknown)
+	 * @param outcomes The Behaviour's outcomes
+	 */
+	public void registerBehaviourCompletion(CDTStimulusPackage completedPackage, CDTBehaviourOutcomeSet outcomes){
 		if(outcomes == null){
 			return;
 		}
-		unlockTwinInstance(outcomes.getSourceTwin());
+		CDTTwinLease[] releasedLease = new CDTTwinLease[1];
+		if(!releaseTwinLeaseForCompletion(completedPackage, outcomes, releasedLease)){
+			return;
+		}
+		triggerDispatch(outcomes.getSourceTwin());
 		CDTOutcomeCache.addOutcomeSet(outcomes);
 		ArrayList<UoWIdentifier> completedUoWProcessing = new ArrayList<>();
 		for(CDTBehaviourOutcome outcome: outcomes.getOutcomes()) {
 			CDTStimulus currentStimulus = CDTStimulusCache.getStimulus(outcome.getSourceStimulus());
-			causalityMap.setProcessingStatus(CDTBehaviourProcessingOfStimulusStatusEnum.PROCESSING_STATUS_FINISHED,outcome.getSourceBehaviour(), outcome.getAffectingTwin(), outcome.getSourceStimulus(), currentStimulus.getOriginalUoW() );
-			if(causalityMap.checkForCompletionOfProcessingByAllBehavioursForAllTwins(currentStimulus.getOriginalUoW())){
+			if(currentStimulus == null){
+				// The Stimulus (and its UoW) has already been expired
+				continue;
+			}
+			boolean uowCompleted = causalityMap.setProcessingStatus(CDTBehaviourProcessingOfStimulusStatusEnum.PROCESSING_STATUS_FINISHED,outcome.getSourceBehaviour(), outcome.getAffectingTwin(), outcome.getSourceStimulus(), currentStimulus.getOriginalUoW() );
+			if(uowCompleted){
 				if(!completedUoWProcessing.contains(currentStimulus.getOriginalUoW()))
 					completedUoWProcessing.add(currentStimulus.getOriginalUoW());
 			}
 		}
+		// A Behaviour can complete with no outcomes, so the entry the twin was leased for is (also) finished here
+		UoWIdentifier leasedUoW = finishLeasedStimulus(releasedLease[0]);
+		if(leasedUoW != null && !completedUoWProcessing.contains(leasedUoW)){
+			completedUoWProcessing.add(leasedUoW);
+		}
 		for(UoWIdentifier uowId: completedUoWProcessing){
 			aggregateAndPublishOutcomes(uowId);
 		}
 	}
 
+	/**
+	 * Releases the twin's lease if it is (still) held for the completing Behaviour/Stimulus, recording the
+	 * Behaviour's latency. A completion that arrives after its lease expired does not release the twin (which
+	 * may by now be leased to something else): its outcomes are still accepted if the watchdog hasn't yet
+	 * failed the Stimulus (cancelling any pending redelivery), and discarded if it has.
+	 *
+	 * The lease is matched on the completed StimulusPackage if known, else on the first outcome's source
+	 * Behaviour/Stimulus. With neither, it is only released when leases cannot expire (and so cannot have been
+	 * re-issued to another Stimulus in the meantime).
+	 *
+	 * @param completedPackage The StimulusPackage the Behaviour was dispatched (may be null)
+	 * @param outcomes The Behaviour's outcomes
+	 * @param releasedLease Holder, set to the lease that was released (if any)
+	 * @return true if the outcomes should be registered
+	 */
+	private boolean releaseTwinLeaseForCompletion(CDTStimulusPackage completedPackage, CDTBehaviourOutcomeSet outcomes, CDTTwinLease[] releasedLease){
+		CDTIdentifier sourceTwin = outcomes.getSourceTwin();
+		if(sourceTwin == null){
+			return(true);
+		}
+		CDTBehaviourOutcome firstOutcome = null;
+		if(outcomes.getOutcomes() != null && !outcomes.getOutcomes().isEmpty()){
+			firstOutcome = outcomes.getOutcomes().iterator().next();
+		}
+		CDTWorkerLanes.WorkerLane lane = workerLanes.getLane(sourceTwin);
+		CDTTwinLease currentLease = lane.getBusyStatus().get(sourceTwin);
+		boolean leaseHeldForCompletion = false;
+		if(currentLease != null){
+			if(completedPackage != null){
+				leaseHeldForCompletion = (currentLease.getStimulusPackage() == completedPackage);
+			} else if(firstOutcome != null){
+				leaseHeldForCompletion = currentLease.isHeldFor(firstOutcome.getSourceBehaviour(), firstOutcome.getSourceStimulus());
+			} else {
+				leaseHeldForCompletion = (specifyTwinLeaseTimeoutMillis() <= 0);
+			}
+		}
+		if(leaseHeldForCompletion){
+			if(lane.releaseLease(currentLease)){
+				behaviourLatencyStatistics.recordCompletion(currentLease.getBehaviourId(), currentLease.getElapsedNanos());
+				releasedLease[0] = currentLease;
+			}
+			return(true);
+		}
+		if(firstOutcome == null){
+			getLogger().debug(".releaseTwinLeaseForCompletion(): Completion (with no outcomes) does not hold the twin's lease, twin --> {}, lease --> {}", sourceTwin, currentLease);
+			return(true);
+		}
+		// A late completion (the lease it was dispatched under has expired, and may have been re-issued)
+		CDTBehaviourProcessingOfStimulusStatusEnum currentStatus = null;
+		CDTStimulus sourceStimulus = CDTStimulusCache.getStimulus(firstOutcome.getSourceStimulus());
+		if(sourceStimulus != null){
+			currentStatus = causalityMap.getProcessingStatus(firstOutcome.getSourceBehaviour(), sourceTwin, firstOutcome.getSourceStimulus(), sourceStimulus.getOriginalUoW());
+		}
+		if(sourceStimulus == null || currentStatus == null || currentStatus == CDTBehaviourProcessingOfStimulusStatusEnum.PROCESSING_STATUS_FINISHED){
+			getLogger().warn(".releaseTwinLeaseForCompletion(): Discarding late completion (Stimulus already failed/finished), twin --> {}, behaviour --> {}", sourceTwin, firstOutcome.getSourceBehaviour());
+			return(false);
+		}
+		lane.cancelRedelivery(sourceTwin, firstOutcome.getSourceBehaviour(), firstOutcome.getSourceStimulus());
+		getLogger().debug(".releaseTwinLeaseForCompletion(): Accepting late completion, twin --> {}, behaviour --> {}", sourceTwin, firstOutcome.getSourceBehaviour());
+		return(true);
+	}
+
+	/**
+	 * Expires any twin lease that has been held longer than specifyTwinLeaseTimeoutMillis(): the StimulusPackage
+	 * is redelivered (ahead of anything else queued for the twin) up to specifyMaximumStimulusDeliveryAttempts()
+	 * times, after which the Stimulus is marked as FINISHED for that twin/behaviour and its UoW will be published
+	 * as failed.
+	 */
+	public void leaseWatchdog(){
+		long currentTimeMillis = System.currentTimeMillis();
+		int maximumDeliveryAttempts = Math.max(1, specifyMaximumStimulusDeliveryAttempts());
+		for(int laneIndex = 0; laneIndex < workerLanes.getLaneCount(); laneIndex++){
+			CDTWorkerLanes.WorkerLane lane = workerLanes.getLane(laneIndex);
+			for(CDTTwinLease currentLease: lane.getBusyStatus().values()){
+				if(!currentLease.isExpired(currentTimeMillis)){
+					continue;
+				}
+				boolean redeliver = currentLease.getDeliveryAttempt() < maximumDeliveryAttempts;
+				if(!lane.expireLease(currentLease, redeliver)){
+					continue;
+				}
+				behaviourLatencyStatistics.recordLeaseExpiry(currentLease.getBehaviourId());
+				if(redeliver || currentLease.getStimulusPackage() == null){
+					getLogger().warn(".leaseWatchdog(): Twin lease expired, lease --> {}, redelivering --> {}", currentLease, redeliver);
+				} else {
+					getLogger().error(".leaseWatchdog(): Twin lease expired on final delivery attempt, failing Stimulus, lease --> {}", currentLease);
+					failLeasedStimulus(currentLease);
+				}
+				triggerDispatch(currentLease.getTwinId());
+			}
+		}
+	}
+
+	/**
+	 * Marks the (Stimulus, DigitalTwin, Behaviour) entry a released lease was held for as FINISHED, if it is still
+	 * being tracked.
+	 *
+	 * @param releasedLease The released lease (may be null)
+	 * @return The lease's UoW if this left it with no outstanding processing, else null
+	 */
+	private UoWIdentifier finishLeasedStimulus(CDTTwinLease releasedLease){
+		if(releasedLease == null || releasedLease.getStimulusId() == null || releasedLease.getUoWId() == null){
+			return(null);
+		}
+		if(causalityMap.getProcessingStatus(releasedLease.getBehaviourId(), releasedLease.getTwinId(), releasedLease.getStimulusId(), releasedLease.getUoWId()) == null){
+			return(null);
+		}
+		boolean uowCompleted = causalityMap.setProcessingStatus(CDTBehaviourProcessingOfStimulusStatusEnum.PROCESSING_STATUS_FINISHED, releasedLease.getBehaviourId(), releasedLease.getTwinId(), releasedLease.getStimulusId(), releasedLease.getUoWId());
+		if(uowCompleted){
+			return(releasedLease.getUoWId());
+		}
+		return(null);
+	}
+
+	private void failLeasedStimulus(CDTTwinLease expiredLease){
+		UoWIdentifier uowId = expiredLease.getUoWId();
+		if(uowId == null || expiredLease.getStimulusId() == null){
+			return;
+		}
+		uowFailureDescriptions.putIfAbsent(uowId, "Behaviour " + expiredLease.getBehaviourId() + " did not complete Stimulus " + expiredLease.getStimulusId() + " for twin " + expiredLease.getTwinId() + " after " + expiredLease.getDeliveryAttempt() + " attempt(s)");
+		boolean uowCompleted = causalityMap.setProcessingStatus(CDTBehaviourProcessingOfStimulusStatusEnum.PROCESSING_STATUS_FINISHED, expiredLease.getBehaviourId(), expiredLease.getTwinId(), expiredLease.getStimulusId(), uowId);
+		if(uowCompleted){
+			aggregateAndPublishOutcomes(uowId);
+		}
+	}
+
 	// Stage 8
 
+	/**
+	 * Adds a payload for each outcome (one per forwarder if the outcome is echoed to FHIR) derived from the UoW's
+	 * Stimulus to the UoW's egress content, then publishes the UoW. Each output resource is serialised (in compact
+	 * form) only once, with the resulting String shared across its payloads, and the manifests are re-used per
+	 * (resource type, forwarder) via the CDTEgressManifestCache.
+	 *
+	 * @param uowId The UoW whose outcomes are to be aggregated
+	 */
 	public void aggregateAndPublishOutcomes(UoWIdentifier uowId){
 		if(uowId == null){
 			return;
 		}
-		Set<CDTStimulusIdentifier> stimulusSet = CDTStimulusCache.getStimulusAssociatedWithUoW(uowId);
-		ArrayList<CDTBehaviourOutcome> outcomeList = new ArrayList<>();
-		for(CDTStimulusIdentifier stimulusId: stimulusSet){
-			outcomeList.addAll(CDTOutcomeCache.getStimulusDerivedOutcomes(stimulusId));
-		}
-		ArrayList<UoWPayload> payloadList = new ArrayList<>();
+		Set<CDTStimulusIdentifier> stimulusSet = new HashSet<>(CDTStimulusCache.getStimulusAssociatedWithUoW(uowId));
 		UoW theUoW = uowCacheMT.getUoW(uowId);
-		for(CDTBehaviourOutcome outcome: outcomeList) {
-			UoWPayload payload = new UoWPayload();
-			try {
-				String resourceAsString = getJsonObjectMapper().writeValueAsString(outcome.getOutputResource());
-				payload.setPayload(resourceAsString);
-				if (outcome.isEchoedToFHIR()) {
-					Set<String> forwarderSet = twinInstance2EdgeForwarderMap.getForwarderAssociation2DigitalTwin(outcome.getAffectingTwin());
-					for (String forwarderInstance : forwarderSet) {
-						DataParcelTypeDescriptor payloadTopic = fhirTopicBuilder.newTopicToken(outcome.getOutputResource().getResourceESRType().name(), "4.0.1");
-						DataParcelManifest manifest = new DataParcelManifest();
-						manifest.setContentDescriptor(payloadTopic);
-						manifest.setNormalisationStatus(DataParcelNormalisationStatusEnum.DATA_PARCEL_CONTENT_NORMALISATION_TRUE);
-						manifest.setValidationStatus(DataParcelValidationStatusEnum.DATA_PARCEL_CONTENT_VALIDATED_TRUE);
-						manifest.setDataParcelFlowDirection(DataParcelDirectionEnum.WORKFLOW_OUTPUT_DATA_PARCEL);
-						manifest.setEnforcementPointApprovalStatus(PolicyEnforcementPointApprovalStatusEnum.POLICY_ENFORCEMENT_POINT_APPROVAL_NEGATIVE);
-						manifest.setSourceSystem(processingPlant.getIPCServiceName());
-						manifest.setIntendedTargetSystem(forwarderInstance);
-						payload.setPayloadManifest(manifest);
+		if(theUoW == null){
+			getLogger().warn(".aggregateAndPublishOutcomes(): UoW is no longer cached (already published or expired), uowId --> {}", uowId);
+			purgeUoW(uowId, stimulusSet);
+			return;
+		}
+		// A UoW with no outcomes (e.g. no Stimulus matched any Behaviour) was still processed successfully
+		theUoW.setProcessingOutcome(UoWProcessingOutcomeEnum.UOW_OUTCOME_SUCCESS);
+		boolean aggregationFailed = false;
+		for(CDTStimulusIdentifier stimulusId: stimulusSet){
+			for(CDTBehaviourOutcome outcome: CDTOutcomeCache.getStimulusDerivedOutcomes(stimulusId)) {
+				try {
+					String resourceType = outcome.getOutputResource().getResourceESRType().name();
+					if (outcome.isEchoedToFHIR()) {
+						// Edge forwarders always get JSON
+						String resourceAsString = compactJsonWriter.writeValueAsString(outcome.getOutputResource());
+						Set<String> forwarderSet = twinInstance2EdgeForwarderMap.getForwarderAssociation2DigitalTwin(outcome.getAffectingTwin());
+						for (String forwarderInstance : forwarderSet) {
+							UoWPayload payload = new UoWPayload();
+							payload.setPayload(resourceAsString);
+							payload.setPayloadManifest(egressManifestCache.getOrCreateManifest(resourceType, forwarderInstance, this::buildEgressManifest));
+							theUoW.getEgressContent().addPayloadElement(payload);
+						}
+					} else {
+						UoWPayload payload = new UoWPayload();
+						payload.setPayload(encodeIntraSubsystemPayload(outcome.getOutputResource()));
+						payload.setPayloadManifest(egressManifestCache.getOrCreateManifest(resourceType, null, this::buildEgressManifest));
 						theUoW.getEgressContent().addPayloadElement(payload);
 					}
-				} else {
-					DataParcelTypeDescriptor payloadTopic = fhirTopicBuilder.newTopicToken(outcome.getOutputResource().getResourceESRType().name(), "4.0.1");
-					DataParcelManifest manifest = new DataParcelManifest();
-					manifest.setContentDescriptor(payloadTopic);
-					manifest.setNormalisationStatus(DataParcelNormalisationStatusEnum.DATA_PARCEL_CONTENT_NORMALISATION_TRUE);
-					manifest.setValidationStatus(DataParcelValidationStatusEnum.DATA_PARCEL_CONTENT_VALIDATED_TRUE);
-					manifest.setDataParcelFlowDirection(DataParcelDirectionEnum.WORKFLOW_OUTPUT_DATA_PARCEL);
-					manifest.setEnforcementPointApprovalStatus(PolicyEnforcementPointApprovalStatusEnum.POLICY_ENFORCEMENT_POINT_APPROVAL_NEGATIVE);
-					manifest.setSourceSystem(processingPlant.getIPCServiceName());
-					payload.setPayloadManifest(manifest);
-					theUoW.getEgressContent().addPayloadElement(payload);
+					theUoW.setProcessingOutcome(UoWProcessingOutcomeEnum.UOW_OUTCOME_SUCCESS);
+				} catch (JsonProcessingException e) {
+					getLogger().error(".aggregateAndPublishOutcomes(): Cannot encode ESR to String, error --> {}", e.toString());
+					theUoW.setProcessingOutcome(UoWProcessingOutcomeEnum.UOW_OUTCOME_FAILED);
+					theUoW.setFailureDescription(e.toString());
+					aggregationFailed = true;
+					break;
 				}
-				theUoW.setProcessingOutcome(UoWProcessingOutcomeEnum.UOW_OUTCOME_SUCCESS);
-			} catch (JsonProcessingException e) {
-				getLogger().error(".aggregateAndPublishOutcomes(): Cannot encode ESR to JSON String, error --> {}", e.toString());
-				theUoW.setProcessingOutcome(UoWProcessingOutcomeEnum.UOW_OUTCOME_FAILED);
-				theUoW.setFailureDescription(e.toString());
+			}
+			if(aggregationFailed){
 				break;
 			}
 		}
+		String failureDescription = uowFailureDescriptions.remove(uowId);
+		if(failureDescription != null){
+			theUoW.setProcessingOutcome(UoWProcessingOutcomeEnum.UOW_OUTCOME_FAILED);
+			theUoW.setFailureDescription(failureDescription);
+		} else if(admissionController.isUoWShed(uowId)){
+			theUoW.setProcessingOutcome(UoWProcessingOutcomeEnum.UOW_OUTCOME_FAILED);
+			theUoW.setFailureDescription("One or more Stimulus were shed as their DigitalTwin work queue was full");
+		}
 		publishUoW(theUoW);
 		// Now Clean Up
+		purgeUoW(uowId, stimulusSet);
+	}
+
+	private void purgeUoW(UoWIdentifier uowId, Set<CDTStimulusIdentifier> stimulusSet){
+		uowCacheMT.removeUoW(uowId);
+		admissionController.releaseUoW(uowId);
+		uowFailureDescriptions.remove(uowId);
 		for(CDTStimulusIdentifier stimulusId: stimulusSet){
 			CDTOutcomeCache.removeOutcomesDerivedFromStimulus(stimulusId);
 			CDTStimulusCache.removeStimulus(stimulusId);
@@ -315,16 +711,205 @@ public abstract class CDTOrchestratorBase {
 		causalityMap.purgeUoWFromMap(uowId);
 	}
 
+	/**
+	 * Publishes (as failed) any UoW not completed within specifyUoWProcessingDeadlineMillis() of its registration,
+	 * and removes any Stimulus, Outcome or causality entries that have outlived both the deadline and their UoW.
+	 * Then, if a pool is still larger than its specifyMaximum*PoolSize(), its oldest entries are evicted.
+	 */
+	public void expireOverdueEntries(){
+		long deadlineMillis = specifyUoWProcessingDeadlineMillis();
+		if(deadlineMillis > 0){
+			expireEntriesOlderThan(deadlineMillis);
+		}
+		evictExcessEntries();
+	}
+
+	private void expireEntriesOlderThan(long deadlineMillis){
+		long cutoffMillis = System.currentTimeMillis() - deadlineMillis;
+		int expiredUoWCount = 0;
+		for(UoWIdentifier overdueUoW: uowCacheMT.getUoWsRegisteredBefore(cutoffMillis)){
+			if(causalityMap.claimCompletion(overdueUoW)){
+				uowFailureDescriptions.putIfAbsent(overdueUoW, "UoW processing was not completed within " + deadlineMillis + " milliseconds");
+				aggregateAndPublishOutcomes(overdueUoW);
+				expiredUoWCount += 1;
+			}
+		}
+		int orphanedStimulusCount = 0;
+		for(CDTStimulusIdentifier staleStimulusId: CDTStimulusCache.getStimulusAddedBefore(cutoffMillis)){
+			CDTStimulus staleStimulus = CDTStimulusCache.getStimulus(staleStimulusId);
+			if(staleStimulus == null || !uowCacheMT.hasUoW(staleStimulus.getOriginalUoW())){
+				CDTOutcomeCache.removeOutcomesDerivedFromStimulus(staleStimulusId);
+				CDTStimulusCache.removeStimulus(staleStimulusId);
+				orphanedStimulusCount += 1;
+			}
+		}
+		int orphanedOutcomeCount = 0;
+		for(CDTBehaviourOutcomeIdentifier staleOutcomeId: CDTOutcomeCache.getOutcomesAddedBefore(cutoffMillis)){
+			CDTBehaviourOutcome staleOutcome = CDTOutcomeCache.getOutcome(staleOutcomeId);
+			if(staleOutcome == null || CDTStimulusCache.getStimulus(staleOutcome.getSourceStimulus()) == null){
+				CDTOutcomeCache.removeOutcome(staleOutcomeId);
+				orphanedOutcomeCount += 1;
+			}
+		}
+		int orphanedCausalityCount = 0;
+		for(UoWIdentifier staleUoW: causalityMap.getUoWsTrackedBefore(cutoffMillis)){
+			if(!uowCacheMT.hasUoW(staleUoW)){
+				causalityMap.purgeUoWFromMap(staleUoW);
+				uowFailureDescriptions.remove(staleUoW);
+				orphanedCausalityCount += 1;
+			}
+		}
+		if(expiredUoWCount > 0 || orphanedStimulusCount > 0 || orphanedOutcomeCount > 0 || orphanedCausalityCount > 0){
+			getLogger().warn(".expireEntriesOlderThan(): expiredUoWs --> {}, orphanedStimulus --> {}, orphanedOutcomes --> {}, orphanedCausalityEntries --> {}", expiredUoWCount, orphanedStimulusCount, orphanedOutcomeCount, orphanedCausalityCount);
+		}
+	}
+
+	/**
+	 * Evicts the oldest entries of any pool larger than its maximum size. As the Stimulus and Outcome entries
+	 * are only there to complete their UoW, an excess Stimulus/Outcome is evicted by publishing its UoW as failed
+	 * (which purges all of the UoW's entries) - or, if the UoW is already gone, by removing it directly.
+	 */
+	private void evictExcessEntries(){
+		int evictedUoWCount = 0;
+		int maximumUoWs = specifyMaximumUoWPoolSize();
+		int excessUoWs = uowCacheMT.getUoWCount() - maximumUoWs;
+		if(maximumUoWs > 0 && excessUoWs > 0){
+			for(UoWIdentifier oldestUoW: uowCacheMT.getOldestUoWs(excessUoWs)){
+				if(failEvictedUoW(oldestUoW, "UoW pool exceeded its maximum size (" + maximumUoWs + ")")){
+					evictedUoWCount += 1;
+				}
+			}
+		}
+		int evictedStimulusCount = 0;
+		int maximumStimulus = specifyMaximumStimulusPoolSize();
+		int excessStimulus = CDTStimulusCache.getStimulusCount() - maximumStimulus;
+		if(maximumStimulus > 0 && excessStimulus > 0){
+			for(CDTStimulusIdentifier oldestStimulusId: CDTStimulusCache.getOldestStimulus(excessStimulus)){
+				if(CDTStimulusCache.getStimulusCount() <= maximumStimulus){
+					break;
+				}
+				CDTStimulus oldestStimulus = CDTStimulusCache.getStimulus(oldestStimulusId);
+				if(oldestStimulus != null && uowCacheMT.hasUoW(oldestStimulus.getOriginalUoW())){
+					failEvictedUoW(oldestStimulus.getOriginalUoW(), "Stimulus pool exceeded its maximum size (" + maximumStimulus + ")");
+				} else {
+					CDTOutcomeCache.removeOutcomesDerivedFromStimulus(oldestStimulusId);
+					CDTStimulusCache.removeStimulus(oldestStimulusId);
+				}
+				evictedStimulusCount += 1;
+			}
+		}
+		int evictedOutcomeCount = 0;
+		int maximumOutcomes = specifyMaximumOutcomePoolSize();
+		int excessOutcomes = CDTOutcomeCache.getOutcomeCount() - maximumOutcomes;
+		if(maximumOutcomes > 0 && excessOutcomes > 0){
+			for(CDTBehaviourOutcomeIdentifier oldestOutcomeId: CDTOutcomeCache.getOldestOutcomes(excessOutcomes)){
+				if(CDTOutcomeCache.getOutcomeCount() <= maximumOutcomes){
+					break;
+				}
+				CDTBehaviourOutcome oldestOutcome = CDTOutcomeCache.getOutcome(oldestOutcomeId);
+				CDTStimulus sourceStimulus = null;
+				if(oldestOutcome != null){
+					sourceStimulus = CDTStimulusCache.getStimulus(oldestOutcome.getSourceStimulus());
+				}
+				if(sourceStimulus != null && uowCacheMT.hasUoW(sourceStimulus.getOriginalUoW())){
+					failEvictedUoW(sourceStimulus.getOriginalUoW(), "Outcome pool exceeded its maximum size (" + maximumOutcomes + ")");
+				} else {
+					CDTOutcomeCache.removeOutcome(oldestOutcomeId);
+				}
+				evictedOutcomeCount += 1;
+			}
+		}
+		if(evictedUoWCount > 0 || evictedStimulusCount > 0 || evictedOutcomeCount > 0){
+			poolEvictionCount.addAndGet(evictedUoWCount + evictedStimulusCount + evictedOutcomeCount);
+			getLogger().warn(".evictExcessEntries(): evictedUoWs --> {}, evictedStimulus --> {}, evictedOutcomes --> {}, uowPoolSize --> {}, stimulusPoolSize --> {}, outcomePoolSize --> {}", evictedUoWCount, evictedStimulusCount, evictedOutcomeCount, getUoWPoolSize(), getStimulusPoolSize(), getOutcomePoolSize());
+		}
+	}
+
+	/**
+	 * @return true if this call published the UoW (as failed), false if it was already being completed
+	 */
+	private boolean failEvictedUoW(UoWIdentifier uowId, String failureDescription){
+		if(!causalityMap.claimCompletion(uowId)){
+			return(false);
+		}
+		uowFailureDescriptions.putIfAbsent(uowId, failureDescription);
+		aggregateAndPublishOutcomes(uowId);
+		return(true);
+	}
+
+	private boolean hasMaximumPoolSizes(){
+		return(specifyMaximumUoWPoolSize() > 0 || specifyMaximumStimulusPoolSize() > 0 || specifyMaximumOutcomePoolSize() > 0);
+	}
+
+	/**
+	 * Encodes an (intra-subsystem) output resource per specifyIntraSubsystemPayloadEncoding(). The UoW payload is a
+	 * String, so a binary encoding is carried Base64 encoded.
+	 *
+	 * @param resource The output resource
+	 * @return The encoded payload
+	 * @throws JsonProcessingException If the resource cannot be encoded
+	 */
+	private String encodeIntraSubsystemPayload(Object resource) throws JsonProcessingException {
+		if(intraSubsystemPayloadEncoding.isBinary()){
+			return(Base64.getEncoder().encodeToString(intraSubsystemPayloadWriter.writeValueAsBytes(resource)));
+		}
+		return(intraSubsystemPayloadWriter.writeValueAsString(resource));
+	}
+
+	/**
+	 * @param encoding The intra-subsystem payload encoding
+	 * @return A (compact) writer for the encoding - the shared compactJsonWriter for JSON
+	 */
+	private ObjectWriter buildPayloadWriter(CDTPayloadEncodingEnum encoding){
+		ObjectMapper encodingMapper;
+		switch(encoding){
+			case PAYLOAD_ENCODING_SMILE:
+				encodingMapper = new ObjectMapper(new SmileFactory());
+				break;
+			case PAYLOAD_ENCODING_CBOR:
+				encodingMapper = new ObjectMapper(new CBORFactory());
+				break;
+			case PAYLOAD_ENCODING_JSON:
+			default:
+				return(compactJsonWriter);
+		}
+		encodingMapper.registerModule(new JavaTimeModule());
+		return(encodingMapper.writer());
+	}
+
+	/**
+	 * Builds the (egress) manifest for an output resource type, optionally targeted at a specific forwarder.
+	 *
+	 * @param resourceType The output resource's type (name)
+	 * @param forwarderInstance The intended target system (null if none)
+	 * @return A new DataParcelManifest
+	 */
+	private DataParcelManifest buildEgressManifest(String resourceType, String forwarderInstance){
+		DataParcelTypeDescriptor payloadTopic = fhirTopicBuilder.newTopicToken(resourceType, "4.0.1");
+		if(forwarderInstance == null && intraSubsystemPayloadEncoding.isBinary()){
+			payloadTopic.setDataParcelDiscriminatorType(CDTPayloadEncodingEnum.PAYLOAD_ENCODING_DISCRIMINATOR_TYPE);
+			payloadTopic.setDataParcelDiscriminatorValue(intraSubsystemPayloadEncoding.getMediaType());
+		}
+		DataParcelManifest manifest = new DataParcelManifest();
+		manifest.setContentDescriptor(payloadTopic);
+		manifest.setNormalisationStatus(DataParcelNormalisationStatusEnum.DATA_PARCEL_CONTENT_NORMALISATION_TRUE);
+		manifest.setValidationStatus(DataParcelValidationStatusEnum.DATA_PARCEL_CONTENT_VALIDATED_TRUE);
+		manifest.setDataParcelFlowDirection(DataParcelDirectionEnum.WORKFLOW_OUTPUT_DATA_PARCEL);
+		manifest.setEnforcementPointApprovalStatus(PolicyEnforcementPointApprovalStatusEnum.POLICY_ENFORCEMENT_POINT_APPROVAL_NEGATIVE);
+		manifest.setSourceSystem(processingPlant.getIPCServiceName());
+		if(forwarderInstance != null){
+			manifest.setIntendedTargetSystem(forwarderInstance);
+		}
+		return(manifest);
+	}
+
 	// Stage 9
 
 	public void publishUoW(UoW outputUoW){
 		getLogger().debug(".publishUoW(): Entry, outputUoW --> {}", outputUoW);
 		TopologyNodeFDN wupInstanceKey = uowCacheMT.getAssociatedWUPKey(outputUoW.getInstanceID());
-		SoftwareComponent node = topologyIM.getNode(wupInstanceKey);
-		getLogger().trace(".publishUoW(): Node Element retrieved --> {}", node);
-		TopologyNodeFDNToken wupToken = node.getComponentFDN().getToken();
-		getLogger().trace(".publishUoW(): wupFunctionToken (NodeElementFunctionToken) for this activity --> {}", wupToken);
-		RouteElementNames elementNames = new RouteElementNames(wupToken);
+		String wupEgressURI = resolvedRouteRegistry.getOrResolveWUPEgressURI(wupInstanceKey, this::resolveWUPEgressURI);
+		getLogger().trace(".publishUoW(): WUP egress route for this activity --> {}", wupEgressURI);
 		WUPJobCard jobCard = uowCacheMT.getAssociatedJobCard(outputUoW.getInstanceID());
 		ParcelStatusElement statusElement = uowCacheMT.getAssociatedStatusElement(outputUoW.getInstanceID());
 		WorkUnitTransportPacket transportPacket = new WorkUnitTransportPacket(jobCard.getActivityID(), Date.from(Instant.now()), outputUoW);
@@ -349,8 +934,22 @@ public abstract class CDTOrchestratorBase {
 		}
 		transportPacket.setCurrentJobCard(jobCard);
 		transportPacket.setCurrentParcelStatus(statusElement);
-		ProducerTemplate prodTemplate = camelCTX.createProducerTemplate();
-		prodTemplate.sendBody(elementNames.getEndPointWUPContainerEgressProcessorIngres(), transportPacket);
+		producerEndpointCache.sendBody(camelCTX, wupEgressURI, transportPacket);
+	}
+
+	private String resolveWUPEgressURI(TopologyNodeFDN wupInstanceKey){
+		SoftwareComponent node = topologyIM.getNode(wupInstanceKey);
+		getLogger().trace(".resolveWUPEgressURI(): Node Element retrieved --> {}", node);
+		if(node == null){
+			return(null);
+		}
+		TopologyNodeFDNToken wupToken = node.getComponentFDN().getToken();
+		getLogger().trace(".resolveWUPEgressURI(): wupFunctionToken (NodeElementFunctionToken) for this activity --> {}", wupToken);
+		RouteElementNames elementNames = new RouteElementNames(wupToken);
+		String egressURI = elementNames.getEndPointWUPContainerEgressProcessorIngres();
+		// Pre-resolve the endpoint as well, so the publish is just a lookup plus a send
+		producerEndpointCache.resolveEndpoint(camelCTX, egressURI);
+		return(egressURI);
 	}
 
     //
@@ -371,6 +970,57 @@ public abstract class CDTOrchestratorBase {
 		return(this.associatedBehaviourEncapsulatorNode);
 	}
 
+	public CDTProducerEndpointCache getProducerEndpointCache(){
+		return(this.producerEndpointCache);
+	}
+
+	public int getUoWPoolSize(){
+		return(uowCacheMT.getUoWCount());
+	}
+
+	public int getStimulusPoolSize(){
+		return(CDTStimulusCache.getStimulusCount());
+	}
+
+	public int getOutcomePoolSize(){
+		return(CDTOutcomeCache.getOutcomeCount());
+	}
+
+	public int getCausalityPoolSize(){
+		return(causalityMap.getTrackedUoWCount());
+	}
+
+	/**
+	 * @return How many UoW, Stimulus and Outcome entries have been evicted because their pool was over its maximum size
+	 */
+	public long getPoolEvictionCount(){
+		return(poolEvictionCount.get());
+	}
+
+	public CDTBehaviourLatencyStatistics getBehaviourLatencyStatistics(){
+		return(this.behaviourLatencyStatistics);
+	}
+
+	public CDTAdmissionController getAdmissionController(){
+		return(this.admissionController);
+	}
+
+	public CDTWorkerLanes getWorkerLanes(){
+		return(this.workerLanes);
+	}
+
+	public CDTEgressManifestCache getEgressManifestCache(){
+		return(this.egressManifestCache);
+	}
+
+	public CDTStimulusRoutingIndex getStimulusRoutingIndex(){
+		return(this.stimulusRoutingIndex);
+	}
+
+	public CDTResolvedRouteRegistry getResolvedRouteRegistry(){
+		return(this.resolvedRouteRegistry);
+	}
+
     //
     //
     // Abstracted Methods to be Implemented by sub-types
@@ -380,6 +1030,137 @@ public abstract class CDTOrchestratorBase {
 	abstract protected Logger specifyLogger();
     abstract protected CommunicateResourceTypeEnum specifyTwinType();
 
+	/**
+	 * Sub-types can override this to revert to purely polled (every DELAY milliseconds) dispatch.
+	 *
+	 * @return true if stimulus dispatch is triggered by enqueue/behaviour-completion events (with polling as a fallback)
+	 */
+	protected boolean specifyEventDrivenDispatch(){
+		return(true);
+	}
+
+	/**
+	 * Sub-types whose inclusion/exclusion filters only depend on the Stimulus itself (and not on the current
+	 * state of the DigitalTwins) can override this so that a repeated Stimulus (same CDTStimulusIdentifier)
+	 * re-uses the previously derived fan-out rather than re-running the filters.
+	 *
+	 * @return How long (in milliseconds) a derived Stimulus fan-out may be re-used for (0 disables the cache)
+	 */
+	protected long specifyStimulusFanOutCacheTTL(){
+		return(0);
+	}
+
+	/**
+	 * Sub-types with slow inclusion/exclusion filters (e.g. those that consult large CareTeam or Group twins)
+	 * can override this so that the filters of different Behaviours are evaluated concurrently (on a dedicated,
+	 * bounded, ForkJoinPool) rather than one after the other on the ingres (Camel consumer) thread. The filters
+	 * must then be thread-safe.
+	 *
+	 * @return true if the filters of different Behaviours may be evaluated in parallel
+	 */
+	protected boolean specifyParallelFilterEvaluation(){
+		return(false);
+	}
+
+	/**
+	 * @return The maximum number of Behaviour filters evaluated concurrently (when parallel evaluation is enabled)
+	 */
+	protected int specifyFilterEvaluationParallelism(){
+		return(Math.min(4, Runtime.getRuntime().availableProcessors()));
+	}
+
+	/**
+	 * Sub-types with many (busy) DigitalTwins can override this to shard their twins across several worker lanes,
+	 * each with its own work queues, busy-status map and manifestor, so unrelated twins are dispatched in parallel.
+	 * Like the other admission/encoding settings below, this is resolved once, within initialise().
+	 *
+	 * @return The number of worker lanes (at least 1)
+	 */
+	protected int specifyWorkerLaneCount(){
+		return(1);
+	}
+
+	/**
+	 * @return The maximum number of UoWs registered but not yet published (0 means unlimited)
+	 */
+	protected int specifyMaximumInFlightUoWs(){
+		return(0);
+	}
+
+	/**
+	 * @return The maximum number of StimulusPackages queued for any one DigitalTwin (0 means unlimited)
+	 */
+	protected int specifyMaximumTwinQueueDepth(){
+		return(0);
+	}
+
+	/**
+	 * @return How long (in milliseconds) a new UoW may wait for an in-flight slot before being shed
+	 */
+	protected long specifyAdmissionWaitMillis(){
+		return(100);
+	}
+
+	/**
+	 * Intra-subsystem outputs (those not echoed to FHIR) can be encoded in a binary format, cheaper for the
+	 * consuming (Iris) WUPs to decode. Outputs for edge forwarders remain JSON.
+	 *
+	 * @return The encoding of intra-subsystem UoW payloads
+	 */
+	protected CDTPayloadEncodingEnum specifyIntraSubsystemPayloadEncoding(){
+		return(CDTPayloadEncodingEnum.PAYLOAD_ENCODING_JSON);
+	}
+
+	/**
+	 * Lease expiry is off by default: a redelivery runs the Behaviour again while the first delivery may still be
+	 * running, so only orchestrators whose Behaviours are idempotent (and bounded in duration) should opt in.
+	 *
+	 * @return How long (in milliseconds) a Behaviour may hold a DigitalTwin before its lease expires (0 means never)
+	 */
+	protected long specifyTwinLeaseTimeoutMillis(){
+		return(0);
+	}
+
+	/**
+	 * @return How many times a StimulusPackage is delivered (the first delivery plus redeliveries after an expired
+	 * lease) before the Stimulus is failed (0 or 1 means it is never redelivered)
+	 */
+	protected int specifyMaximumStimulusDeliveryAttempts(){
+		return(0);
+	}
+
+	/**
+	 * @return How long (in milliseconds) a UoW may take to complete before it is published as failed and its
+	 * (and any other orphaned) Stimulus, Outcome and causality entries are removed (0 means never)
+	 */
+	protected long specifyUoWProcessingDeadlineMillis(){
+		return(600000);
+	}
+
+	/**
+	 * @return The most UoWs held at once - beyond this the oldest are published as failed by the lifecycle
+	 * sweep (0 means no limit)
+	 */
+	protected int specifyMaximumUoWPoolSize(){
+		return(0);
+	}
+
+	/**
+	 * @return The most Stimulus held at once - beyond this the UoWs of the oldest are published as failed by the
+	 * lifecycle sweep (0 means no limit)
+	 */
+	protected int specifyMaximumStimulusPoolSize(){
+		return(0);
+	}
+
+	/**
+	 * @return The most Outcomes held at once - beyond this the UoWs of the oldest are published as failed by the
+	 * lifecycle sweep (0 means no limit)
+	 */
+	protected int specifyMaximumOutcomePoolSize(){
+		return(0);
+	}
+
     //
     //
     // Configuration Methods for Behaviour Encapsulation Route WUP
@@ -411,14 +1192,28 @@ public abstract class CDTOrchestratorBase {
     //
     
 	public void registerBehaviourCentricInclusiveFilterRules(CDTBehaviourIdentifier behaviourId, CDTBehaviourCentricInclusionFilterRulesInterface inclusionRules) {
-		getLogger().debug(".registerBehaviourCentricInclusiveFilterRules(): Entry, BehaviourIdentifier --> {}", behaviourId);
+		registerBehaviourCentricInclusiveFilterRules(behaviourId, inclusionRules, null);
+	}
+
+	/**
+	 * Registers the Behaviour's inclusion filter, indicating which Stimulus resource types it can ever include.
+	 * The filter will then only be evaluated for Stimulus of those types.
+	 *
+	 * @param behaviourId The Behaviour
+	 * @param inclusionRules The Behaviour's inclusion filter
+	 * @param stimulusTypes The Stimulus resource types of interest (null or empty means all types)
+	 */
+	public void registerBehaviourCentricInclusiveFilterRules(CDTBehaviourIdentifier behaviourId, CDTBehaviourCentricInclusionFilterRulesInterface inclusionRules, Set<CommunicateResourceTypeEnum> stimulusTypes) {
+		getLogger().debug(".registerBehaviourCentricInclusiveFilterRules(): Entry, BehaviourIdentifier --> {}, stimulusTypes --> {}", behaviourId, stimulusTypes);
 		inclusionFilterMap.put(behaviourId, inclusionRules);
+		stimulusRoutingIndex.registerBehaviour(behaviourId, stimulusTypes);
 		getLogger().debug(".registerBehaviourCentricInclusiveFilterRules(): Exit");
 	}
 
 	public void registerBehaviourCentricExclusiveFilterRules(CDTBehaviourIdentifier behaviourId, CDTBehaviourCentricExclusionFilterRulesInterface exclusionRules) {
 		getLogger().debug(".registerBehaviourCentricExclusiveFilterRules(): Entry, BehaviourIdentifier --> {}", behaviourId);
 		exclusionFilterMap.put(behaviourId, exclusionRules);
+		stimulusRoutingIndex.invalidateFanOutCache();
 		getLogger().debug(".registerBehaviourCentricExclusiveFilterRules(): Exit");
 	}
     
@@ -426,6 +1221,11 @@ public abstract class CDTOrchestratorBase {
 		getLogger().debug(".registerBehaviourNode() Entry, BehaviourIdentifier --> {}, NodeElement --> {}", behaviourId, behaviourNode);
 		if(!behaviourSet.containsKey(behaviourId)) {
 			behaviourSet.put(behaviourId,  behaviourNode);
+			// Resolve the behaviour's ingres route (and endpoint) now, so each dispatch to it is just a lookup plus a send
+			RouteElementNames nameSet = new RouteElementNames(behaviourNode.getComponentFDN().getToken());
+			String behaviourIngresURI = nameSet.getEndPointWUPContainerIngresProcessorIngres();
+			resolvedRouteRegistry.registerBehaviourIngresURI(behaviourId, behaviourIngresURI);
+			producerEndpointCache.resolveEndpoint(camelCTX, behaviourIngresURI);
 		}
 		getLogger().debug(".registerBehaviourNode() Exit");
 	}
@@ -437,20 +1237,25 @@ public abstract class CDTOrchestratorBase {
 	//
 
     public void lockTwinInstance(CDTIdentifier twinIdentifier, CDTBehaviourIdentifier behaviourIdentifier){
-        if(twinInstanceBusyStatus.containsKey(twinIdentifier)){
+        if(twinIdentifier == null){
             return;
         }
-        twinInstanceBusyStatus.put(twinIdentifier, behaviourIdentifier);
+        CDTTwinLease lease = new CDTTwinLease(twinIdentifier, behaviourIdentifier, null, null, null, 1, specifyTwinLeaseTimeoutMillis());
+        workerLanes.getLane(twinIdentifier).getBusyStatus().putIfAbsent(twinIdentifier, lease);
     }
 
     public void unlockTwinInstance(CDTIdentifier twinIdentifier){
-        if(twinInstanceBusyStatus.containsKey(twinIdentifier)){
-            twinInstanceBusyStatus.remove(twinIdentifier);
+        if(twinIdentifier == null){
+            return;
         }
+        workerLanes.getLane(twinIdentifier).getBusyStatus().remove(twinIdentifier);
     }
 
     public boolean isTwinLocked(CDTIdentifier twinIdentifier){
-        if(twinInstanceBusyStatus.containsKey(twinIdentifier)){
+        if(twinIdentifier == null){
+            return(false);
+        }
+        if(workerLanes.getLane(twinIdentifier).getBusyStatus().containsKey(twinIdentifier)){
             return(true);
         } else {
             return(false);
@@ -462,10 +1267,13 @@ public abstract class CDTOrchestratorBase {
     }
 
     public CDTBehaviourIdentifier getTwinActiveBehaviour(CDTIdentifier twinIdentifier){
-        if(twinInstanceBusyStatus.containsKey(twinIdentifier)){
-            return(twinInstanceBusyStatus.get(twinIdentifier));
-        } else {
+        if(twinIdentifier == null){
+            return(null);
+        }
+        CDTTwinLease lease = workerLanes.getLane(twinIdentifier).getBusyStatus().get(twinIdentifier);
+        if(lease == null){
             return(null);
         }
+        return(lease.getBehaviourId());
     }
 }
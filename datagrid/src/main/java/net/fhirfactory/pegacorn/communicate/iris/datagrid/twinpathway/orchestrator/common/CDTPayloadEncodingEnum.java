@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2021 Mark Hunter
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.fhirfactory.pegacorn.communicate.iris.datagrid.twinpathway.orchestrator.common;
+
+/**
+ * The encoding of the (ESR) resources carried within intra-subsystem UoW payloads. The binary encodings are
+ * carried Base64 encoded (as UoWPayload content is a String), and are advertised via the content descriptor's
+ * discriminator (type PAYLOAD_ENCODING_DISCRIMINATOR_TYPE, value the encoding's media type). A payload without
+ * that discriminator is JSON.
+ */
+public enum CDTPayloadEncodingEnum {
+    PAYLOAD_ENCODING_JSON("application/json"),
+    PAYLOAD_ENCODING_SMILE("application/x-jackson-smile"),
+    PAYLOAD_ENCODING_CBOR("application/cbor");
+
+    public static final String PAYLOAD_ENCODING_DISCRIMINATOR_TYPE = "PayloadEncoding";
+
+    private String mediaType;
+
+    private CDTPayloadEncodingEnum(String mediaType){
+        this.mediaType = mediaType;
+    }
+
+    public String getMediaType(){
+        return(mediaType);
+    }
+
+    public boolean isBinary(){
+        return(this != PAYLOAD_ENCODING_JSON);
+    }
+
+    /**
+     * @param discriminatorType The content descriptor's discriminator type (may be null)
+     * @param discriminatorValue The content descriptor's discriminator value (may be null)
+     * @return The advertised encoding, or PAYLOAD_ENCODING_JSON if none (or an unknown one) is advertised
+     */
+    public static CDTPayloadEncodingEnum fromDiscriminator(String discriminatorType, String discriminatorValue){
+        if(!PAYLOAD_ENCODING_DISCRIMINATOR_TYPE.equals(discriminatorType) || discriminatorValue == null){
+            return(PAYLOAD_ENCODING_JSON);
+        }
+        for(CDTPayloadEncodingEnum currentEncoding: values()){
+            if(currentEncoding.getMediaType().equals(discriminatorValue)){
+                return(currentEncoding);
+            }
+        }
+        return(PAYLOAD_ENCODING_JSON);
+    }
+}
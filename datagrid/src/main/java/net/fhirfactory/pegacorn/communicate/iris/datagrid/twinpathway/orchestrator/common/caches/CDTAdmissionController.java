@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2021 Mark Hunter
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.fhirfactory.pegacorn.communicate.iris.datagrid.twinpathway.orchestrator.common.caches;
+
+import net.fhirfactory.pegacorn.core.model.petasos.uow.UoWIdentifier;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Admission control for the work entering an orchestrator: caps the number of UoWs in-flight (registered but
+ * not yet published) and the depth of each DigitalTwin's work queue. A limit of 0 means "unlimited".
+ *
+ * A UoW that can't get an in-flight permit immediately waits (up to admissionWaitMillis) and is counted as
+ * deferred if it then gets one, or as shed if it doesn't. A Stimulus that would push a twin's queue beyond its
+ * maximum depth is shed, and its UoW is marked as shed (so it can be reported as failed when published).
+ */
+public class CDTAdmissionController {
+    private final int maximumInFlightUoWs;
+    private final int maximumTwinQueueDepth;
+    private final long admissionWaitMillis;
+    private final Semaphore inFlightPermits;
+    private final Set<UoWIdentifier> admittedUoWs;
+    private final Set<UoWIdentifier> shedUoWs;
+    private final AtomicLong admittedUoWCount;
+    private final AtomicLong deferredUoWCount;
+    private final AtomicLong shedUoWCount;
+    private final AtomicLong shedStimulusCount;
+
+    public CDTAdmissionController(int maximumInFlightUoWs, int maximumTwinQueueDepth, long admissionWaitMillis){
+        this.maximumInFlightUoWs = Math.max(0, maximumInFlightUoWs);
+        this.maximumTwinQueueDepth = Math.max(0, maximumTwinQueueDepth);
+        this.admissionWaitMillis = Math.max(0, admissionWaitMillis);
+        if(this.maximumInFlightUoWs > 0){
+            this.inFlightPermits = new Semaphore(this.maximumInFlightUoWs);
+        } else {
+            this.inFlightPermits = null;
+        }
+        this.admittedUoWs = ConcurrentHashMap.newKeySet();
+        this.shedUoWs = ConcurrentHashMap.newKeySet();
+        this.admittedUoWCount = new AtomicLong(0);
+        this.deferredUoWCount = new AtomicLong(0);
+        this.shedUoWCount = new AtomicLong(0);
+        this.shedStimulusCount = new AtomicLong(0);
+    }
+
+    //
+    // UoW (In-Flight) Admission
+    //
+
+    /**
+     * Attempts to admit the UoW, waiting (at most admissionWaitMillis) for an in-flight permit if none are free.
+     * A UoW that is already in-flight (i.e. re-presented) is admitted without taking a second permit.
+     *
+     * @param uowId The UoW
+     * @return true if the UoW was admitted, false if it was shed
+     */
+    public boolean admitUoW(UoWIdentifier uowId){
+        if(uowId == null){
+            return(false);
+        }
+        if(inFlightPermits == null){
+            admittedUoWs.add(uowId);
+            admittedUoWCount.incrementAndGet();
+            return(true);
+        }
+        if(admittedUoWs.contains(uowId)){
+            return(true);
+        }
+        boolean permitAcquired = inFlightPermits.tryAcquire();
+        if(!permitAcquired && admissionWaitMillis > 0){
+            try {
+                permitAcquired = inFlightPermits.tryAcquire(admissionWaitMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if(permitAcquired){
+                deferredUoWCount.incrementAndGet();
+            }
+        }
+        if(!permitAcquired){
+            shedUoWCount.incrementAndGet();
+            return(false);
+        }
+        if(!admittedUoWs.add(uowId)){
+            // Raced with a re-presentation of the same UoW, which already holds the permit
+            inFlightPermits.release();
+        }
+        admittedUoWCount.incrementAndGet();
+        return(true);
+    }
+
+    /**
+     * Releases the UoW's in-flight permit (if it holds one) and forgets any shed status.
+     *
+     * @param uowId The (published or abandoned) UoW
+     */
+    public void releaseUoW(UoWIdentifier uowId){
+        if(uowId == null){
+            return;
+        }
+        shedUoWs.remove(uowId);
+        if(admittedUoWs.remove(uowId) && inFlightPermits != null){
+            inFlightPermits.release();
+        }
+    }
+
+    //
+    // Stimulus (Twin Queue Depth) Admission
+    //
+
+    /**
+     * @param currentTwinQueueDepth The number of StimulusPackages already queued for the twin
+     * @return true if another StimulusPackage may be queued for the twin
+     */
+    public boolean admitStimulusForTwin(int currentTwinQueueDepth){
+        if(maximumTwinQueueDepth == 0){
+            return(true);
+        }
+        return(currentTwinQueueDepth < maximumTwinQueueDepth);
+    }
+
+    public void recordShedStimulus(UoWIdentifier uowId){
+        shedStimulusCount.incrementAndGet();
+        if(uowId != null){
+            shedUoWs.add(uowId);
+        }
+    }
+
+    public boolean isUoWShed(UoWIdentifier uowId){
+        if(uowId == null){
+            return(false);
+        }
+        return(shedUoWs.contains(uowId));
+    }
+
+    //
+    // Metrics
+    //
+
+    public int getMaximumInFlightUoWs(){
+        return(maximumInFlightUoWs);
+    }
+
+    public int getMaximumTwinQueueDepth(){
+        return(maximumTwinQueueDepth);
+    }
+
+    public int getInFlightUoWCount(){
+        return(admittedUoWs.size());
+    }
+
+    public long getAdmittedUoWCount(){
+        return(admittedUoWCount.get());
+    }
+
+    public long getDeferredUoWCount(){
+        return(deferredUoWCount.get());
+    }
+
+    public long getShedUoWCount(){
+        return(shedUoWCount.get());
+    }
+
+    public long getShedStimulusCount(){
+        return(shedStimulusCount.get());
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2021 Mark Hunter
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.fhirfactory.pegacorn.communicate.iris.datagrid.twinpathway.orchestrator.common.caches;
+
+import net.fhirfactory.pegacorn.internals.communicate.workflow.model.behaviours.CDTBehaviourIdentifier;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-Behaviour latency histograms (dispatch of a StimulusPackage to the Behaviour's completion), plus a count of
+ * the leases that expired (i.e. the Behaviour didn't complete in time) for each Behaviour.
+ */
+public class CDTBehaviourLatencyStatistics {
+    private ConcurrentHashMap<CDTBehaviourIdentifier, LatencyHistogram> behaviourHistogramMap;
+
+    public CDTBehaviourLatencyStatistics(){
+        this.behaviourHistogramMap = new ConcurrentHashMap<>();
+    }
+
+    public void recordCompletion(CDTBehaviourIdentifier behaviourId, long elapsedNanos){
+        if(behaviourId == null){
+            return;
+        }
+        getOrCreateHistogram(behaviourId).record(elapsedNanos);
+    }
+
+    public void recordLeaseExpiry(CDTBehaviourIdentifier behaviourId){
+        if(behaviourId == null){
+            return;
+        }
+        getOrCreateHistogram(behaviourId).recordExpiry();
+    }
+
+    public LatencyHistogram getHistogram(CDTBehaviourIdentifier behaviourId){
+        if(behaviourId == null){
+            return(null);
+        }
+        return(behaviourHistogramMap.get(behaviourId));
+    }
+
+    public Map<CDTBehaviourIdentifier, LatencyHistogram> getAllHistograms(){
+        return(Collections.unmodifiableMap(behaviourHistogramMap));
+    }
+
+    private LatencyHistogram getOrCreateHistogram(CDTBehaviourIdentifier behaviourId){
+        LatencyHistogram histogram = behaviourHistogramMap.get(behaviourId);
+        if(histogram == null){
+            histogram = behaviourHistogramMap.computeIfAbsent(behaviourId, key -> new LatencyHistogram());
+        }
+        return(histogram);
+    }
+
+    /**
+     * A fixed, power-of-two (in milliseconds) bucketed histogram: bucket 0 holds latencies under 1ms, bucket n
+     * (n > 0) those in [2^(n-1), 2^n) milliseconds, and the last bucket everything longer.
+     */
+    public static final class LatencyHistogram {
+        public static final int BUCKET_COUNT = 20; // Last bucket holds everything >= 2^18 ms (~4.4 minutes)
+
+        private final LongAdder[] buckets;
+        private final LongAdder totalNanos;
+        private final LongAdder expiryCount;
+
+        private LatencyHistogram(){
+            this.buckets = new LongAdder[BUCKET_COUNT];
+            for(int counter = 0; counter < BUCKET_COUNT; counter++){
+                buckets[counter] = new LongAdder();
+            }
+            this.totalNanos = new LongAdder();
+            this.expiryCount = new LongAdder();
+        }
+
+        private void record(long elapsedNanos){
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(Math.max(0, elapsedNanos));
+            int bucket = 64 - Long.numberOfLeadingZeros(elapsedMillis);
+            buckets[Math.min(bucket, BUCKET_COUNT - 1)].increment();
+            totalNanos.add(elapsedNanos);
+        }
+
+        private void recordExpiry(){
+            expiryCount.increment();
+        }
+
+        /**
+         * @return The exclusive upper bound (in milliseconds) of the bucket, or Long.MAX_VALUE for the last bucket
+         */
+        public static long getBucketUpperBoundMillis(int bucket){
+            if(bucket >= BUCKET_COUNT - 1){
+                return(Long.MAX_VALUE);
+            }
+            return(1L << bucket);
+        }
+
+        public long[] getBucketCounts(){
+            long[] counts = new long[BUCKET_COUNT];
+            for(int counter = 0; counter < BUCKET_COUNT; counter++){
+                counts[counter] = buckets[counter].sum();
+            }
+            return(counts);
+        }
+
+        public long getCount(){
+            long count = 0;
+            for(LongAdder currentBucket: buckets){
+                count += currentBucket.sum();
+            }
+            return(count);
+        }
+
+        public long getAverageNanos(){
+            long count = getCount();
+            if(count == 0){
+                return(0);
+            }
+            return(totalNanos.sum() / count);
+        }
+
+        /**
+         * @param percentile The percentile (0 to 100)
+         * @return The upper bound (in milliseconds) of the bucket the percentile falls within
+         */
+        public long getPercentileUpperBoundMillis(double percentile){
+            long[] counts = getBucketCounts();
+            long total = 0;
+            for(long currentCount: counts){
+                total += currentCount;
+            }
+            if(total == 0){
+                return(0);
+            }
+            long threshold = (long)Math.ceil(total * Math.min(100.0, Math.max(0.0, percentile)) / 100.0);
+            long cumulative = 0;
+            for(int counter = 0; counter < BUCKET_COUNT; counter++){
+                cumulative += counts[counter];
+                if(cumulative >= threshold && cumulative > 0){
+                    return(getBucketUpperBoundMillis(counter));
+                }
+            }
+            return(Long.MAX_VALUE);
+        }
+
+        public long getExpiryCount(){
+            return(expiryCount.sum());
+        }
+
+        @Override
+        public String toString() {
+            return "LatencyHistogram{" +
+                    "count=" + getCount() +
+                    ", averageNanos=" + getAverageNanos() +
+                    ", p50UpperBoundMillis=" + getPercentileUpperBoundMillis(50) +
+                    ", p99UpperBoundMillis=" + getPercentileUpperBoundMillis(99) +
+                    ", expiryCount=" + getExpiryCount() +
+                    '}';
+        }
+    }
+}
@@ -29,13 +29,29 @@ import net.fhirfactory.pegacorn.core.model.petasos.uow.UoWIdentifier;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Enumeration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * Tracks, per UoW, the processing status of every (Stimulus, DigitalTwin, Behaviour) combination derived from
+ * it. Each UoW has a single flat status map (keyed by the combination) plus an atomic count of the
+ * combinations that are not yet PROCESSING_STATUS_FINISHED. The count is adjusted on every status
+ * transition, so checking for UoW completion is O(1) rather than a walk of all the UoW's processing.
+ *
+ * While a UoW's Stimulus are still being registered (between openStimulusRegistration() and
+ * closeStimulusRegistration()) the registration itself counts as outstanding, so the UoW can't be signalled as
+ * complete before all its Stimulus have been fanned-out - and a UoW with no fan-out at all completes as soon as
+ * its registration closes.
+ */
 public class CDTCausalityMapCache {
     private static final Logger LOG = LoggerFactory.getLogger(CDTCausalityMapCache.class);
 
-    private ConcurrentHashMap<UoWIdentifier, ConcurrentHashMap<CDTStimulusIdentifier, ConcurrentHashMap<CDTIdentifier, ConcurrentHashMap<CDTBehaviourIdentifier, CDTBehaviourProcessingOfStimulusStatusEnum>>>> causalityMap;
+    private ConcurrentHashMap<UoWIdentifier, UoWCausalityRecord> causalityMap;
 
     public CDTCausalityMapCache(){
         causalityMap = new ConcurrentHashMap<>();
@@ -47,13 +63,57 @@ public class CDTCausalityMapCache {
             LOG.debug(".addUoW(): Exit, Provided UoW Identifier is null");
             return;
         }
-        if(causalityMap.containsKey(uowId)){
-            LOG.debug(".addUoW(): Exit, Already contains the identifier UoW Identifier, so doing nothing");
+        causalityMap.computeIfAbsent(uowId, key -> new UoWCausalityRecord());
+        LOG.debug(".addUoW(): Exit");
+    }
+
+    /**
+     * Marks the start of the UoW's Stimulus registration.
+     */
+    public void openStimulusRegistration(UoWIdentifier uowId){
+        if(uowId == null){
             return;
         }
-        ConcurrentHashMap<CDTStimulusIdentifier, ConcurrentHashMap<CDTIdentifier, ConcurrentHashMap<CDTBehaviourIdentifier, CDTBehaviourProcessingOfStimulusStatusEnum>>> stimulusProcessingStatus = new ConcurrentHashMap<>();
-        causalityMap.put(uowId,stimulusProcessingStatus);
-        LOG.debug(".addUoW(): Exit");
+        UoWCausalityRecord uowRecord = causalityMap.computeIfAbsent(uowId, key -> new UoWCausalityRecord());
+        if(uowRecord.getRegistrationOpen().compareAndSet(false, true)){
+            uowRecord.getOutstandingCount().incrementAndGet();
+        }
+    }
+
+    /**
+     * Marks the end of the UoW's Stimulus registration.
+     *
+     * @return true if (and only the first time that) this left the UoW with no outstanding processing
+     */
+    public boolean closeStimulusRegistration(UoWIdentifier uowId){
+        if(uowId == null){
+            return(false);
+        }
+        UoWCausalityRecord uowRecord = causalityMap.get(uowId);
+        if(uowRecord == null){
+            return(false);
+        }
+        if(!uowRecord.getRegistrationOpen().compareAndSet(true, false)){
+            return(false);
+        }
+        if(uowRecord.getOutstandingCount().decrementAndGet() == 0){
+            return(uowRecord.getCompletionSignalled().compareAndSet(false, true));
+        }
+        return(false);
+    }
+
+    /**
+     * Claims the (once only) right to complete the UoW, irrespective of its outstanding processing - e.g. when
+     * it has passed its processing deadline.
+     *
+     * @return true if the caller now owns the completion of the UoW
+     */
+    public boolean claimCompletion(UoWIdentifier uowId){
+        if(uowId == null){
+            return(false);
+        }
+        UoWCausalityRecord uowRecord = causalityMap.computeIfAbsent(uowId, key -> new UoWCausalityRecord());
+        return(uowRecord.getCompletionSignalled().compareAndSet(false, true));
     }
 
     public void associateStimulus2UoW(CDTStimulusIdentifier stimulusId, UoWIdentifier uowId){
@@ -62,12 +122,8 @@ public class CDTCausalityMapCache {
             LOG.debug(".associateStimulus2UoW(): Exit, Provided Stimulus Identifier or UoW Identifier is null");
             return;
         }
-        if(!causalityMap.containsKey(uowId)){
-            LOG.trace(".associateStimulus2UoW(): Map doesn't contain UoW, adding it");
-            addUoW(uowId);
-        }
-        ConcurrentHashMap<CDTIdentifier, ConcurrentHashMap<CDTBehaviourIdentifier, CDTBehaviourProcessingOfStimulusStatusEnum>> stimulusProcessingStatus = new ConcurrentHashMap<>();
-        causalityMap.get(uowId).put(stimulusId,stimulusProcessingStatus);
+        // A Stimulus (without a Twin/Behaviour) carries no processing status, so only the UoW needs tracking
+        addUoW(uowId);
         LOG.debug(".associateStimulus2UoW(): Exit");
     }
 
@@ -77,19 +133,8 @@ public class CDTCausalityMapCache {
             LOG.debug(".associateDigitalTwin2Stimulus2UoW(): Either UoW Identifier, Stimulus Identifier or the Twin Identifier are null --> doing nothing");
             return;
         }
-        if(!causalityMap.containsKey(uowId)){
-            LOG.trace(".associateDigitalTwin2Stimulus2UoW(): Map doesn't contain UoW Identifier, so adding");
-            addUoW(uowId);
-        }
-        associateStimulus2UoW(stimulusId,uowId);
-        ConcurrentHashMap<CDTIdentifier, ConcurrentHashMap<CDTBehaviourIdentifier, CDTBehaviourProcessingOfStimulusStatusEnum>> stimulusProcessingStatus = causalityMap.get(uowId).get(stimulusId);
-        if(stimulusProcessingStatus.containsKey(twinId)){
-            LOG.debug(".associateDigitalTwin2Stimulus2UoW(): Exit, Digital Twin is already associated to this Stimulus (and this UoW)");
-            return;
-        }
-        LOG.trace(".associateDigitalTwin2Stimulus2UoW(): Associating the Twin Identifier to the specified Stimulus Identifier");
-        ConcurrentHashMap<CDTBehaviourIdentifier, CDTBehaviourProcessingOfStimulusStatusEnum> perDigitalTwinProcessingStatus = new ConcurrentHashMap<>();
-        stimulusProcessingStatus.put(twinId, perDigitalTwinProcessingStatus);
+        // A Twin (without a Behaviour) carries no processing status, so only the UoW needs tracking
+        addUoW(uowId);
         LOG.debug(".associateDigitalTwin2Stimulus2UoW(): Exit");
     }
 
@@ -99,25 +144,60 @@ public class CDTCausalityMapCache {
             LOG.debug(".associateBehaviour2DigitalTwin2Stimulus2UoW(): Either Behaviour Identifier, Stimulus Identifier or the Twin Identifier are null --> doing nothing");
             return;
         }
-        associateDigitalTwin2Stimulus2UoW(twinId, stimulusId, uowId);
-        ConcurrentHashMap<CDTBehaviourIdentifier, CDTBehaviourProcessingOfStimulusStatusEnum> perBehaviourStatus = causalityMap.get(uowId).get(stimulusId).get(twinId);
-        if(perBehaviourStatus.containsKey(behaviourId)){
-            LOG.debug(".associateBehaviour2DigitalTwin2Stimulus2UoW(): Exit, Map already contains association between this Behaviour Identifier, for this Twin Identifier and the Stimulus Identifier");
-        }
-        LOG.trace(".associateBehaviour2DigitalTwin2Stimulus2UoW(): Associating the Behaviour Identifier to the Twin Identifier - assigning processing status to PROCESSING_STATUS_QUEUED");
-        perBehaviourStatus.put(behaviourId, CDTBehaviourProcessingOfStimulusStatusEnum.PROCESSING_STATUS_QUEUED);
+        UoWCausalityRecord uowRecord = causalityMap.computeIfAbsent(uowId, key -> new UoWCausalityRecord());
+        CausalityKey causalityKey = new CausalityKey(stimulusId, twinId, behaviourId);
+        LOG.trace(".associateBehaviour2DigitalTwin2Stimulus2UoW(): Associating the Behaviour Identifier to the Twin Identifier - assigning processing status to PROCESSING_STATUS_QUEUED (if not already associated)");
+        uowRecord.getProcessingStatusMap().computeIfAbsent(causalityKey, key -> {
+            uowRecord.getOutstandingCount().incrementAndGet();
+            return(CDTBehaviourProcessingOfStimulusStatusEnum.PROCESSING_STATUS_QUEUED);
+        });
         LOG.debug(".associateBehaviour2DigitalTwin2Stimulus2UoW(): Exit");
     }
 
-    public void setProcessingStatus(CDTBehaviourProcessingOfStimulusStatusEnum newStatus, CDTBehaviourIdentifier behaviourId, CDTIdentifier twinId, CDTStimulusIdentifier stimulusId, UoWIdentifier uowId){
+    /**
+     * Updates the processing status of the (Stimulus, DigitalTwin, Behaviour) combination, adjusting the UoW's
+     * outstanding count accordingly.
+     *
+     * @return true if (and only the first time that) this transition left the UoW with no outstanding processing
+     */
+    public boolean setProcessingStatus(CDTBehaviourProcessingOfStimulusStatusEnum newStatus, CDTBehaviourIdentifier behaviourId, CDTIdentifier twinId, CDTStimulusIdentifier stimulusId, UoWIdentifier uowId){
         LOG.debug(".updateProcessingStatus(): Entry, newStatus --> {}, behaviourId (BehaviourIdentifier) --> {}, twinId (DigitalTwinIdentifier) --> {}, stimulusId (StimulusIdentifier) --> {}", newStatus, behaviourId, twinId, stimulusId);
         if(newStatus == null || twinId == null || stimulusId == null || behaviourId == null || uowId == null){
             LOG.debug(".associateBehaviour2DigitalTwin2Stimulus(): Either newStatus, Behaviour Identifier, Stimulus Identifier or the Twin Identifier are null --> doing nothing");
-            return;
+            return(false);
+        }
+        UoWCausalityRecord uowRecord = causalityMap.computeIfAbsent(uowId, key -> new UoWCausalityRecord());
+        CausalityKey causalityKey = new CausalityKey(stimulusId, twinId, behaviourId);
+        boolean newStatusIsFinished = (newStatus == CDTBehaviourProcessingOfStimulusStatusEnum.PROCESSING_STATUS_FINISHED);
+        uowRecord.getProcessingStatusMap().compute(causalityKey, (key, previousStatus) -> {
+            boolean previousStatusIsOutstanding = (previousStatus != null && previousStatus != CDTBehaviourProcessingOfStimulusStatusEnum.PROCESSING_STATUS_FINISHED);
+            if(previousStatusIsOutstanding && newStatusIsFinished){
+                uowRecord.getOutstandingCount().decrementAndGet();
+            } else if(!previousStatusIsOutstanding && !newStatusIsFinished){
+                uowRecord.getOutstandingCount().incrementAndGet();
+            }
+            return(newStatus);
+        });
+        boolean uowCompleted = false;
+        if(newStatusIsFinished && uowRecord.getOutstandingCount().get() == 0){
+            uowCompleted = uowRecord.getCompletionSignalled().compareAndSet(false, true);
+        }
+        LOG.debug(".updateProcessingStatus(): Exit, uowCompleted --> {}", uowCompleted);
+        return(uowCompleted);
+    }
+
+    /**
+     * @return The current processing status of the (Stimulus, DigitalTwin, Behaviour) combination, or null if it isn't tracked
+     */
+    public CDTBehaviourProcessingOfStimulusStatusEnum getProcessingStatus(CDTBehaviourIdentifier behaviourId, CDTIdentifier twinId, CDTStimulusIdentifier stimulusId, UoWIdentifier uowId){
+        if(twinId == null || stimulusId == null || behaviourId == null || uowId == null){
+            return(null);
+        }
+        UoWCausalityRecord uowRecord = causalityMap.get(uowId);
+        if(uowRecord == null){
+            return(null);
         }
-        associateBehaviour2DigitalTwin2Stimulus2UoW(behaviourId, twinId, stimulusId, uowId);
-        causalityMap.get(uowId).get(stimulusId).get(twinId).put(behaviourId, newStatus);
-        LOG.debug(".updateProcessingStatus(): Exit");
+        return(uowRecord.getProcessingStatusMap().get(new CausalityKey(stimulusId, twinId, behaviourId)));
     }
 
     public boolean checkForCompletionOfProcessingByAllBehavioursForAllTwins(UoWIdentifier uowId){
@@ -126,27 +206,40 @@ public class CDTCausalityMapCache {
             LOG.debug(".checkForCompletionOfProcessingByAllBehavioursForAllTwins(): Exit, provided uowId is null, therefore doesn't exist, therefore any work for them must be finished!");
             return(true);
         }
-        ConcurrentHashMap<CDTStimulusIdentifier,ConcurrentHashMap<CDTIdentifier, ConcurrentHashMap<CDTBehaviourIdentifier, CDTBehaviourProcessingOfStimulusStatusEnum>>> perStimulusProcessingStatus = causalityMap.get(uowId);
-        Enumeration<CDTStimulusIdentifier> stimulusSet = perStimulusProcessingStatus.keys();
-        while(stimulusSet.hasMoreElements()) {
-            CDTStimulusIdentifier currentStimulus = stimulusSet.nextElement();
-            ConcurrentHashMap<CDTIdentifier, ConcurrentHashMap<CDTBehaviourIdentifier, CDTBehaviourProcessingOfStimulusStatusEnum>> perTwinProcessingStatus = perStimulusProcessingStatus.get(currentStimulus);
-            Enumeration<CDTIdentifier> twinSet = perTwinProcessingStatus.keys();
-            while (twinSet.hasMoreElements()) {
-                CDTIdentifier currentTwin = twinSet.nextElement();
-                ConcurrentHashMap<CDTBehaviourIdentifier, CDTBehaviourProcessingOfStimulusStatusEnum> behaviourStatusMap = perTwinProcessingStatus.get(currentTwin);
-                Enumeration<CDTBehaviourIdentifier> behaviourSet = behaviourStatusMap.keys();
-                while (behaviourSet.hasMoreElements()) {
-                    CDTBehaviourProcessingOfStimulusStatusEnum currentStatus = behaviourStatusMap.get(behaviourSet.nextElement());
-                    if (currentStatus != CDTBehaviourProcessingOfStimulusStatusEnum.PROCESSING_STATUS_FINISHED) {
-                        LOG.debug(".checkForCompletionOfProcessingByAllBehavioursForAllTwins(): Exit, At least one piece of processing is left --> returning false");
-                        return (false);
-                    }
-                }
+        boolean allProcessingFinished = (getOutstandingCount(uowId) == 0);
+        LOG.debug(".checkForCompletionOfProcessingByAllBehavioursForAllTwins(): Exit, allProcessingFinished --> {}", allProcessingFinished);
+        return(allProcessingFinished);
+    }
+
+    /**
+     * @return The number of (Stimulus, DigitalTwin, Behaviour) combinations for the UoW that are not yet finished
+     */
+    public int getOutstandingCount(UoWIdentifier uowId){
+        if(uowId == null){
+            return(0);
+        }
+        UoWCausalityRecord uowRecord = causalityMap.get(uowId);
+        if(uowRecord == null){
+            return(0);
+        }
+        return(uowRecord.getOutstandingCount().get());
+    }
+
+    public int getTrackedUoWCount(){
+        return(causalityMap.size());
+    }
+
+    /**
+     * @return The UoWs that started being tracked before the cutoff
+     */
+    public List<UoWIdentifier> getUoWsTrackedBefore(long cutoffMillis){
+        List<UoWIdentifier> uowList = new ArrayList<>();
+        for(Map.Entry<UoWIdentifier, UoWCausalityRecord> currentEntry: causalityMap.entrySet()){
+            if(currentEntry.getValue().getCreationInstant() < cutoffMillis){
+                uowList.add(currentEntry.getKey());
             }
         }
-        LOG.debug(".checkForCompletionOfProcessingByAllBehavioursForAllTwins(): Exit, Appears all processing is done --> returning true");
-        return(true);
+        return(uowList);
     }
 
     public void purgeUoWFromMap(UoWIdentifier uowId){
@@ -157,4 +250,71 @@ public class CDTCausalityMapCache {
         causalityMap.remove(uowId);
         LOG.debug(".purgeUoWFromMap(): Exit");
     }
+
+    //
+    // Internal Data Structures
+    //
+
+    private static final class UoWCausalityRecord {
+        private final ConcurrentHashMap<CausalityKey, CDTBehaviourProcessingOfStimulusStatusEnum> processingStatusMap;
+        private final AtomicInteger outstandingCount;
+        private final AtomicBoolean completionSignalled;
+        private final AtomicBoolean registrationOpen;
+        private final long creationInstant;
+
+        private UoWCausalityRecord(){
+            this.processingStatusMap = new ConcurrentHashMap<>();
+            this.outstandingCount = new AtomicInteger(0);
+            this.completionSignalled = new AtomicBoolean(false);
+            this.registrationOpen = new AtomicBoolean(false);
+            this.creationInstant = System.currentTimeMillis();
+        }
+
+        private ConcurrentHashMap<CausalityKey, CDTBehaviourProcessingOfStimulusStatusEnum> getProcessingStatusMap() {
+            return processingStatusMap;
+        }
+
+        private AtomicInteger getOutstandingCount() {
+            return outstandingCount;
+        }
+
+        private AtomicBoolean getCompletionSignalled() {
+            return completionSignalled;
+        }
+
+        private AtomicBoolean getRegistrationOpen() {
+            return registrationOpen;
+        }
+
+        private long getCreationInstant() {
+            return creationInstant;
+        }
+    }
+
+    private static final class CausalityKey {
+        private final CDTStimulusIdentifier stimulusId;
+        private final CDTIdentifier twinId;
+        private final CDTBehaviourIdentifier behaviourId;
+        private final int hashCode;
+
+        private CausalityKey(CDTStimulusIdentifier stimulusId, CDTIdentifier twinId, CDTBehaviourIdentifier behaviourId){
+            this.stimulusId = stimulusId;
+            this.twinId = twinId;
+            this.behaviourId = behaviourId;
+            this.hashCode = Objects.hash(stimulusId, twinId, behaviourId);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            CausalityKey that = (CausalityKey) o;
+            return Objects.equals(stimulusId, that.stimulusId) && Objects.equals(twinId, that.twinId) && Objects.equals(behaviourId, that.behaviourId);
+        }
+
+        @Override
+        public int hashCode() {
+            return(hashCode);
+        }
+    }
 }
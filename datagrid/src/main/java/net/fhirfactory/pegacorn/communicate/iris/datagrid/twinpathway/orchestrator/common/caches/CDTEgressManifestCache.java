@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2021 Mark Hunter
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.fhirfactory.pegacorn.communicate.iris.datagrid.twinpathway.orchestrator.common.caches;
+
+import net.fhirfactory.pegacorn.core.model.dataparcel.DataParcelManifest;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+
+/**
+ * Holds the (egress) DataParcelManifest for each (output resource type, target forwarder) pair, so the manifest
+ * and its topic token are built once rather than once per published outcome. The cached manifests are shared
+ * between UoWPayloads and must therefore be treated as read-only.
+ */
+public class CDTEgressManifestCache {
+    private ConcurrentHashMap<EgressManifestKey, DataParcelManifest> manifestMap;
+
+    public CDTEgressManifestCache(){
+        this.manifestMap = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * @param resourceType The output resource's type (name)
+     * @param forwarderInstance The forwarder the payload is intended for (null if it isn't being forwarded)
+     * @param manifestFactory Builds the manifest (from the resourceType and forwarderInstance) the first time the pair is seen
+     * @return The (shared) manifest
+     */
+    public DataParcelManifest getOrCreateManifest(String resourceType, String forwarderInstance, BiFunction<String, String, DataParcelManifest> manifestFactory){
+        EgressManifestKey key = new EgressManifestKey(resourceType, forwarderInstance);
+        DataParcelManifest manifest = manifestMap.get(key);
+        if(manifest == null){
+            manifest = manifestMap.computeIfAbsent(key, newKey -> manifestFactory.apply(newKey.getResourceType(), newKey.getForwarderInstance()));
+        }
+        return(manifest);
+    }
+
+    public void clear(){
+        manifestMap.clear();
+    }
+
+    public int getManifestCount(){
+        return(manifestMap.size());
+    }
+
+    private static final class EgressManifestKey {
+        private final String resourceType;
+        private final String forwarderInstance;
+        private final int hashCode;
+
+        private EgressManifestKey(String resourceType, String forwarderInstance){
+            this.resourceType = resourceType;
+            this.forwarderInstance = forwarderInstance;
+            this.hashCode = Objects.hash(resourceType, forwarderInstance);
+        }
+
+        private String getResourceType() {
+            return resourceType;
+        }
+
+        private String getForwarderInstance() {
+            return forwarderInstance;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            EgressManifestKey that = (EgressManifestKey) o;
+            return Objects.equals(resourceType, that.resourceType) && Objects.equals(forwarderInstance, that.forwarderInstance);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
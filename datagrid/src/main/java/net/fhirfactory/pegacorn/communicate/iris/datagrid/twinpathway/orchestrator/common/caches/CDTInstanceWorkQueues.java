@@ -24,44 +24,45 @@ package net.fhirfactory.pegacorn.communicate.iris.datagrid.twinpathway.orchestra
 import net.fhirfactory.pegacorn.internals.communicate.workflow.model.CDTIdentifier;
 import net.fhirfactory.pegacorn.internals.communicate.workflow.model.stimulus.CDTStimulusPackage;
 
-import java.util.Enumeration;
 import java.util.HashSet;
-import java.util.Queue;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class CDTInstanceWorkQueues {
-    private ConcurrentHashMap<CDTIdentifier, ConcurrentLinkedQueue<CDTStimulusPackage>> twinInstanceStimulusQueue;
-    private ConcurrentHashMap<CDTIdentifier, Object> twinInstanceQueueLock;
+    private ConcurrentHashMap<CDTIdentifier, TwinInstanceMailbox> twinInstanceMailboxes;
+    private AtomicInteger totalStimulusCount;
 
     public CDTInstanceWorkQueues(){
-        twinInstanceStimulusQueue = new ConcurrentHashMap<>();
-        this.twinInstanceQueueLock = new ConcurrentHashMap<>();
+        this.twinInstanceMailboxes = new ConcurrentHashMap<>();
+        this.totalStimulusCount = new AtomicInteger(0);
     }
 
     /**
-     * This method supports the addition of new activity elements (StimulusPackage).
+     * This method supports the addition of new activity elements (StimulusPackage). A StimulusPackage that
+     * is already waiting in the TwinInstance's activity queue is not added again.
      *
      * @param twinInstanceIdentifier The Twin Instance unique Identifier for the Digital Twin Type.
      * @param newStimuli The StimulusPackage to be added the the TwinInstance's activity queue.
      */
     public void addStimulus2Queue(CDTIdentifier twinInstanceIdentifier, CDTStimulusPackage newStimuli) {
-        if (!twinInstanceQueueLock.containsKey(twinInstanceIdentifier)) {
-            twinInstanceQueueLock.put(twinInstanceIdentifier, new Object());
+        if(twinInstanceIdentifier == null || newStimuli == null){
+            return;
         }
-        Object twinQueueLock = twinInstanceQueueLock.get(twinInstanceIdentifier);
-        synchronized(twinQueueLock) {
-            if (twinInstanceStimulusQueue.containsKey(twinInstanceIdentifier)) {
-                Queue<CDTStimulusPackage> twinStimuli = twinInstanceStimulusQueue.get(twinInstanceIdentifier);
-                if (!twinStimuli.contains(newStimuli)) {
-                    twinStimuli.add(newStimuli);
-                }
-            } else {
-                ConcurrentLinkedQueue<CDTStimulusPackage> stimuliQueue = new ConcurrentLinkedQueue<>();
-                stimuliQueue.add(newStimuli);
-                twinInstanceStimulusQueue.put(twinInstanceIdentifier, stimuliQueue);
+        while(true) {
+            TwinInstanceMailbox mailbox = twinInstanceMailboxes.computeIfAbsent(twinInstanceIdentifier, key -> new TwinInstanceMailbox());
+            int offerResult = mailbox.offer(newStimuli);
+            if(offerResult == TwinInstanceMailbox.OFFER_ADDED){
+                totalStimulusCount.incrementAndGet();
+                return;
+            }
+            if(offerResult == TwinInstanceMailbox.OFFER_DUPLICATE){
+                return;
             }
+            // The mailbox was closed (emptied and retired) underneath us, so help remove it and retry
+            twinInstanceMailboxes.remove(twinInstanceIdentifier, mailbox);
         }
     }
 
@@ -73,21 +74,19 @@ public class CDTInstanceWorkQueues {
      * @return A StimulusPackage from the FIFO queue for the identified Digital Twin.
      */
     public CDTStimulusPackage getNextStimulusPackage(CDTIdentifier twinInstanceIdentifier) {
-        if (!twinInstanceQueueLock.containsKey(twinInstanceIdentifier)) {
-            twinInstanceQueueLock.put(twinInstanceIdentifier, new Object());
+        if(twinInstanceIdentifier == null){
+            return(null);
         }
-        Object twinQueueLock = twinInstanceQueueLock.get(twinInstanceIdentifier);
-        CDTStimulusPackage nextStimulusPackage = null;
-        synchronized(twinQueueLock) {
-            if (twinInstanceStimulusQueue.containsKey(twinInstanceIdentifier)) {
-                Queue<CDTStimulusPackage> twinStimuli = twinInstanceStimulusQueue.get(twinInstanceIdentifier);
-                if (!twinStimuli.isEmpty()){
-                    nextStimulusPackage = twinStimuli.poll();
-                    if(twinStimuli.isEmpty()){
-                        twinInstanceStimulusQueue.remove(twinInstanceIdentifier);
-                    }
-                }
-            }
+        TwinInstanceMailbox mailbox = twinInstanceMailboxes.get(twinInstanceIdentifier);
+        if(mailbox == null){
+            return(null);
+        }
+        CDTStimulusPackage nextStimulusPackage = mailbox.poll();
+        if(nextStimulusPackage != null){
+            totalStimulusCount.decrementAndGet();
+        }
+        if(mailbox.tryClose()){
+            twinInstanceMailboxes.remove(twinInstanceIdentifier, mailbox);
         }
         return(nextStimulusPackage);
     }
@@ -101,27 +100,94 @@ public class CDTInstanceWorkQueues {
      * @return A count of the number of StimulusPackage elements (Activity) waiting for the Twin Instance to process.
      */
     public int getStimulusCount(CDTIdentifier twinInstanceIdentifier){
-        if (twinInstanceStimulusQueue.containsKey(twinInstanceIdentifier)) {
-            Queue<CDTStimulusPackage> twinStimuli = twinInstanceStimulusQueue.get(twinInstanceIdentifier);
-            if (!twinStimuli.isEmpty()) {
-                return (twinStimuli.size());
-            }
+        if(twinInstanceIdentifier == null){
+            return(0);
         }
-        // If we get to this point, there is no Stimuli for the identifier twinInstanceIdentifier
-        // so return ( 0 ).
-        return(0);
+        TwinInstanceMailbox mailbox = twinInstanceMailboxes.get(twinInstanceIdentifier);
+        if(mailbox == null){
+            // There is no Stimuli for the identifier twinInstanceIdentifier so return ( 0 ).
+            return(0);
+        }
+        return(mailbox.size());
+    }
+
+    /**
+     * @return The total number of StimulusPackage elements waiting across all the Twin Instances.
+     */
+    public int getTotalStimulusCount(){
+        return(totalStimulusCount.get());
     }
 
     public Set<CDTIdentifier> getTwinsWithQueuedWork(){
-        if(twinInstanceStimulusQueue.isEmpty()) {
-            return (new HashSet<>());
-        }
         HashSet<CDTIdentifier> twinIdSet = new HashSet<>();
-        Enumeration<CDTIdentifier> twinsWithQueuedTraffic = twinInstanceStimulusQueue.keys();
-        while(twinsWithQueuedTraffic.hasMoreElements()){
-            twinIdSet.add(twinsWithQueuedTraffic.nextElement());
+        if(twinInstanceMailboxes.isEmpty()) {
+            return (twinIdSet);
+        }
+        for(Map.Entry<CDTIdentifier, TwinInstanceMailbox> currentMailbox: twinInstanceMailboxes.entrySet()){
+            if(currentMailbox.getValue().size() > 0){
+                twinIdSet.add(currentMailbox.getKey());
+            }
         }
         return(twinIdSet);
     }
 
+    /**
+     * A lock-free multi-producer/single-consumer activity queue for a single Twin Instance. A companion
+     * (concurrent) set of the queued StimulusPackages gives O(1) duplicate detection, and a counter gives a
+     * precise size. The counter doubles as the mailbox's "closed" flag: a consumer that finds the mailbox
+     * empty swaps the count from 0 to CLOSED, after which producers can no longer add to it and instead
+     * create a fresh mailbox - so an empty mailbox can be retired without any locking and without losing
+     * a concurrently offered StimulusPackage.
+     */
+    private static final class TwinInstanceMailbox {
+        private static final int CLOSED = -1;
+        private static final int OFFER_ADDED = 0;
+        private static final int OFFER_DUPLICATE = 1;
+        private static final int OFFER_CLOSED = 2;
+
+        private final ConcurrentLinkedQueue<CDTStimulusPackage> stimulusQueue;
+        private final Set<CDTStimulusPackage> queuedStimulusSet;
+        private final AtomicInteger queuedCount;
+
+        private TwinInstanceMailbox(){
+            this.stimulusQueue = new ConcurrentLinkedQueue<>();
+            this.queuedStimulusSet = ConcurrentHashMap.newKeySet();
+            this.queuedCount = new AtomicInteger(0);
+        }
+
+        private int offer(CDTStimulusPackage stimulusPackage){
+            if(!queuedStimulusSet.add(stimulusPackage)){
+                return(OFFER_DUPLICATE);
+            }
+            while(true){
+                int currentCount = queuedCount.get();
+                if(currentCount == CLOSED){
+                    queuedStimulusSet.remove(stimulusPackage);
+                    return(OFFER_CLOSED);
+                }
+                if(queuedCount.compareAndSet(currentCount, currentCount + 1)){
+                    break;
+                }
+            }
+            stimulusQueue.offer(stimulusPackage);
+            return(OFFER_ADDED);
+        }
+
+        private CDTStimulusPackage poll(){
+            CDTStimulusPackage stimulusPackage = stimulusQueue.poll();
+            if(stimulusPackage != null){
+                queuedStimulusSet.remove(stimulusPackage);
+                queuedCount.decrementAndGet();
+            }
+            return(stimulusPackage);
+        }
+
+        private boolean tryClose(){
+            return(queuedCount.compareAndSet(0, CLOSED));
+        }
+
+        private int size(){
+            return(Math.max(0, queuedCount.get()));
+        }
+    }
 }
@@ -27,18 +27,24 @@ import net.fhirfactory.pegacorn.internals.communicate.workflow.model.behaviours.
 import net.fhirfactory.pegacorn.internals.communicate.workflow.model.behaviours.CDTBehaviourOutcomeSet;
 import net.fhirfactory.pegacorn.internals.communicate.workflow.model.stimulus.CDTStimulusIdentifier;
 
-import java.util.Collection;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 public class CDTOutcomeCache {
     private ConcurrentHashMap<CDTBehaviourOutcomeIdentifier, CDTBehaviourOutcome> outcomePool;
     private ConcurrentHashMap<CDTBehaviourIdentifier, Set<CDTBehaviourOutcomeIdentifier>> behaviour2OutcomeMap;
+    private ConcurrentHashMap<CDTStimulusIdentifier, Set<CDTBehaviourOutcomeIdentifier>> stimulus2OutcomeMap;
+    private ConcurrentHashMap<CDTBehaviourOutcomeIdentifier, Long> outcomeAddedInstantMap;
 
     public CDTOutcomeCache(){
         this.outcomePool = new ConcurrentHashMap<>();
         this.behaviour2OutcomeMap = new ConcurrentHashMap<>();
+        this.stimulus2OutcomeMap = new ConcurrentHashMap<>();
+        this.outcomeAddedInstantMap = new ConcurrentHashMap<>();
     }
 
     public void addOutcome(CDTBehaviourOutcome newOutcome){
@@ -49,9 +55,13 @@ public class CDTOutcomeCache {
             return;
         }
         this.outcomePool.put(newOutcome.getId(), newOutcome);
+        this.outcomeAddedInstantMap.put(newOutcome.getId(), System.currentTimeMillis());
         if(newOutcome.getSourceBehaviour() != null){
             addOutcomeAssociation2Behaviour(newOutcome.getId(), newOutcome.getSourceBehaviour());
         }
+        if(newOutcome.getSourceStimulus() != null){
+            stimulus2OutcomeMap.computeIfAbsent(newOutcome.getSourceStimulus(), key -> ConcurrentHashMap.newKeySet()).add(newOutcome.getId());
+        }
     }
 
     public void removeOutcome(CDTBehaviourOutcomeIdentifier outcomeToRemove){
@@ -63,7 +73,17 @@ public class CDTOutcomeCache {
         }
         CDTBehaviourOutcome workingOutcome = outcomePool.get(outcomeToRemove);
         removeOutcomeAssociation2Behaviour(workingOutcome.getId(), workingOutcome.getSourceBehaviour());
+        if(workingOutcome.getSourceStimulus() != null){
+            stimulus2OutcomeMap.computeIfPresent(workingOutcome.getSourceStimulus(), (key, outcomeSet) -> {
+                outcomeSet.remove(outcomeToRemove);
+                if(outcomeSet.isEmpty()){
+                    return(null);
+                }
+                return(outcomeSet);
+            });
+        }
         outcomePool.remove(outcomeToRemove);
+        outcomeAddedInstantMap.remove(outcomeToRemove);
     }
 
     public CDTBehaviourOutcome getOutcome(CDTBehaviourOutcomeIdentifier outcomeId){
@@ -95,38 +115,32 @@ public class CDTOutcomeCache {
         if(outcomeId == null || behaviourId == null){
             return;
         }
-        if(!behaviour2OutcomeMap.containsKey(behaviourId)){
-            HashSet<CDTBehaviourOutcomeIdentifier> outcomeSet = new HashSet<>();
-            behaviour2OutcomeMap.put(behaviourId, outcomeSet);
-        }
-        behaviour2OutcomeMap.get(behaviourId).add(outcomeId);
+        behaviour2OutcomeMap.computeIfAbsent(behaviourId, key -> ConcurrentHashMap.newKeySet()).add(outcomeId);
     }
 
     public void removeOutcomeAssociation2Behaviour(CDTBehaviourOutcomeIdentifier outcomeId, CDTBehaviourIdentifier behaviourId){
         if(outcomeId == null || behaviourId == null){
             return;
         }
-        if(!behaviour2OutcomeMap.containsKey(behaviourId)){
-            return;
-        }
-        Set<CDTBehaviourOutcomeIdentifier> outcomeSet = behaviour2OutcomeMap.get(behaviourId);
-        if(!outcomeSet.contains(outcomeId)){
+        behaviour2OutcomeMap.computeIfPresent(behaviourId, (key, outcomeSet) -> {
             outcomeSet.remove(outcomeId);
             if(outcomeSet.isEmpty()){
-                behaviour2OutcomeMap.remove(behaviourId);
+                return(null);
             }
-        }
+            return(outcomeSet);
+        });
     }
 
     public void removeOutcomesDerivedFromStimulus(CDTStimulusIdentifier stimulusId){
         if(stimulusId == null){
             return;
         }
-        Collection<CDTBehaviourOutcome> outcomes = outcomePool.values();
-        for(CDTBehaviourOutcome outcome: outcomes) {
-            if (outcome.getSourceStimulus() == stimulusId) {
-                removeOutcome(outcome.getId());
-            }
+        Set<CDTBehaviourOutcomeIdentifier> outcomeSet = stimulus2OutcomeMap.get(stimulusId);
+        if(outcomeSet == null){
+            return;
+        }
+        for(CDTBehaviourOutcomeIdentifier outcomeId: new ArrayList<>(outcomeSet)) {
+            removeOutcome(outcomeId);
         }
     }
 
@@ -145,12 +159,49 @@ public class CDTOutcomeCache {
             return(new HashSet<>());
         }
         HashSet<CDTBehaviourOutcome> derivedOutcomes = new HashSet<>();
-        Collection<CDTBehaviourOutcome> outcomes = outcomePool.values();
-        for(CDTBehaviourOutcome outcome: outcomes){
-            if(outcome.getSourceStimulus() == stimulusId){
+        Set<CDTBehaviourOutcomeIdentifier> outcomeSet = stimulus2OutcomeMap.get(stimulusId);
+        if(outcomeSet == null){
+            return(derivedOutcomes);
+        }
+        for(CDTBehaviourOutcomeIdentifier outcomeId: outcomeSet){
+            CDTBehaviourOutcome outcome = outcomePool.get(outcomeId);
+            if(outcome != null){
                 derivedOutcomes.add(outcome);
             }
         }
         return(derivedOutcomes);
     }
+
+    /**
+     * @return The outcomes added before the cutoff (milliseconds since the epoch)
+     */
+    public List<CDTBehaviourOutcomeIdentifier> getOutcomesAddedBefore(long cutoffMillis){
+        List<CDTBehaviourOutcomeIdentifier> outcomeList = new ArrayList<>();
+        for(Map.Entry<CDTBehaviourOutcomeIdentifier, Long> currentEntry: outcomeAddedInstantMap.entrySet()){
+            if(currentEntry.getValue() < cutoffMillis){
+                outcomeList.add(currentEntry.getKey());
+            }
+        }
+        return(outcomeList);
+    }
+
+    /**
+     * @return The (up to) count oldest outcomes (by added instant), oldest first
+     */
+    public List<CDTBehaviourOutcomeIdentifier> getOldestOutcomes(int count){
+        List<Map.Entry<CDTBehaviourOutcomeIdentifier, Long>> entryList = new ArrayList<>(outcomeAddedInstantMap.entrySet());
+        entryList.sort(Map.Entry.comparingByValue());
+        List<CDTBehaviourOutcomeIdentifier> outcomeList = new ArrayList<>();
+        for(Map.Entry<CDTBehaviourOutcomeIdentifier, Long> currentEntry: entryList){
+            if(outcomeList.size() >= count){
+                break;
+            }
+            outcomeList.add(currentEntry.getKey());
+        }
+        return(outcomeList);
+    }
+
+    public int getOutcomeCount(){
+        return(outcomePool.size());
+    }
 }
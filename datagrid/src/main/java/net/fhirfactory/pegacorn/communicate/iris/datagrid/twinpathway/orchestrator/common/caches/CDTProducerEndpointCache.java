@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2021 Mark Hunter
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.fhirfactory.pegacorn.communicate.iris.datagrid.twinpathway.orchestrator.common.caches;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.Endpoint;
+import org.apache.camel.ProducerTemplate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Holds a single (thread-safe, long-lived) ProducerTemplate and the Camel Endpoints resolved for each
+ * destination URI, so that sending to a behaviour or WUP is a map lookup plus a send, rather than a new
+ * ProducerTemplate (which was never stopped) plus an endpoint resolution on every message.
+ */
+public class CDTProducerEndpointCache {
+    private static final Logger LOG = LoggerFactory.getLogger(CDTProducerEndpointCache.class);
+
+    private ConcurrentHashMap<String, Endpoint> endpointMap;
+    private volatile ProducerTemplate producerTemplate;
+    private AtomicLong sendCount;
+    private AtomicLong endpointResolutionCount;
+
+    public CDTProducerEndpointCache(){
+        this.endpointMap = new ConcurrentHashMap<>();
+        this.producerTemplate = null;
+        this.sendCount = new AtomicLong(0);
+        this.endpointResolutionCount = new AtomicLong(0);
+    }
+
+    /**
+     * Resolves (and caches) the Endpoint for the URI, so the first send to it doesn't pay the resolution cost.
+     *
+     * @param camelContext The CamelContext within which the endpoint is resolved
+     * @param endpointURI The endpoint URI
+     * @return The resolved Endpoint
+     */
+    public Endpoint resolveEndpoint(CamelContext camelContext, String endpointURI){
+        return(endpointMap.computeIfAbsent(endpointURI, uri -> {
+            LOG.debug(".resolveEndpoint(): Resolving endpoint --> {}", uri);
+            endpointResolutionCount.incrementAndGet();
+            return(camelContext.getEndpoint(uri));
+        }));
+    }
+
+    public void sendBody(CamelContext camelContext, String endpointURI, Object body){
+        Endpoint endpoint = resolveEndpoint(camelContext, endpointURI);
+        getProducerTemplate(camelContext).sendBody(endpoint, body);
+        sendCount.incrementAndGet();
+    }
+
+    private ProducerTemplate getProducerTemplate(CamelContext camelContext){
+        ProducerTemplate currentTemplate = this.producerTemplate;
+        if(currentTemplate == null){
+            synchronized(this){
+                if(this.producerTemplate == null){
+                    this.producerTemplate = camelContext.createProducerTemplate();
+                }
+                currentTemplate = this.producerTemplate;
+            }
+        }
+        return(currentTemplate);
+    }
+
+    /**
+     * Stops the ProducerTemplate and forgets the resolved endpoints (the Endpoints themselves belong to, and
+     * are stopped by, the CamelContext).
+     */
+    public synchronized void shutdown(){
+        if(this.producerTemplate != null){
+            try {
+                this.producerTemplate.stop();
+            } catch(Exception stopException){
+                LOG.warn(".shutdown(): Could not stop ProducerTemplate, error --> {}", stopException.toString());
+            }
+            this.producerTemplate = null;
+        }
+        endpointMap.clear();
+    }
+
+    //
+    // Metrics
+    //
+
+    public int getEndpointCount(){
+        return(endpointMap.size());
+    }
+
+    public long getSendCount(){
+        return(sendCount.get());
+    }
+
+    public long getEndpointResolutionCount(){
+        return(endpointResolutionCount.get());
+    }
+
+    public boolean hasProducerTemplate(){
+        return(this.producerTemplate != null);
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2021 Mark Hunter
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.fhirfactory.pegacorn.communicate.iris.datagrid.twinpathway.orchestrator.common.caches;
+
+import net.fhirfactory.pegacorn.core.model.componentid.TopologyNodeFDN;
+import net.fhirfactory.pegacorn.internals.communicate.workflow.model.behaviours.CDTBehaviourIdentifier;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Maps each Behaviour (to its WUP Container Ingres endpoint URI) and each WUP (to its WUP Container Egress
+ * endpoint URI), so the URIs are derived (RouteElementNames, topology lookup) once per node rather than once
+ * per message.
+ */
+public class CDTResolvedRouteRegistry {
+    private ConcurrentHashMap<CDTBehaviourIdentifier, String> behaviour2IngresURIMap;
+    private ConcurrentHashMap<TopologyNodeFDN, String> wup2EgressURIMap;
+
+    public CDTResolvedRouteRegistry(){
+        this.behaviour2IngresURIMap = new ConcurrentHashMap<>();
+        this.wup2EgressURIMap = new ConcurrentHashMap<>();
+    }
+
+    //
+    // Behaviour (Ingres) Routes
+    //
+
+    public void registerBehaviourIngresURI(CDTBehaviourIdentifier behaviourId, String ingresURI){
+        if(behaviourId == null || ingresURI == null){
+            return;
+        }
+        behaviour2IngresURIMap.put(behaviourId, ingresURI);
+    }
+
+    public String getBehaviourIngresURI(CDTBehaviourIdentifier behaviourId){
+        if(behaviourId == null){
+            return(null);
+        }
+        return(behaviour2IngresURIMap.get(behaviourId));
+    }
+
+    //
+    // WUP (Egress) Routes
+    //
+
+    /**
+     * Returns the egress URI for the WUP, deriving (and registering) it via the supplied resolver the first
+     * time the WUP is seen.
+     *
+     * @param wupKey The WUP's FDN
+     * @param egressURIResolver Derives the egress URI from the WUP's FDN (may return null if it can't)
+     * @return The egress URI, or null if it could not be derived
+     */
+    public String getOrResolveWUPEgressURI(TopologyNodeFDN wupKey, Function<TopologyNodeFDN, String> egressURIResolver){
+        if(wupKey == null){
+            return(null);
+        }
+        String egressURI = wup2EgressURIMap.get(wupKey);
+        if(egressURI == null){
+            egressURI = wup2EgressURIMap.computeIfAbsent(wupKey, egressURIResolver);
+        }
+        return(egressURI);
+    }
+
+    public String getWUPEgressURI(TopologyNodeFDN wupKey){
+        if(wupKey == null){
+            return(null);
+        }
+        return(wup2EgressURIMap.get(wupKey));
+    }
+
+    //
+    // Metrics
+    //
+
+    public int getBehaviourRouteCount(){
+        return(behaviour2IngresURIMap.size());
+    }
+
+    public int getWUPRouteCount(){
+        return(wup2EgressURIMap.size());
+    }
+}
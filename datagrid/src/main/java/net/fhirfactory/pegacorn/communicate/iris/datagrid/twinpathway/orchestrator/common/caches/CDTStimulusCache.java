@@ -26,17 +26,22 @@ import net.fhirfactory.pegacorn.internals.communicate.workflow.model.stimulus.CD
 import net.fhirfactory.pegacorn.internals.communicate.workflow.model.stimulus.CDTStimulusIdentifier;
 import net.fhirfactory.pegacorn.core.model.petasos.uow.UoWIdentifier;
 
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 public class CDTStimulusCache {
     private ConcurrentHashMap<CDTStimulusIdentifier, CDTStimulus> stimulusPool;
     private ConcurrentHashMap<UoWIdentifier, Set<CDTStimulusIdentifier>> uow2StimulusMap;
+    private ConcurrentHashMap<CDTStimulusIdentifier, Long> stimulusAddedInstantMap;
 
     public CDTStimulusCache(){
         this.stimulusPool = new ConcurrentHashMap<>();
         this.uow2StimulusMap = new ConcurrentHashMap<>();
+        this.stimulusAddedInstantMap = new ConcurrentHashMap<>();
     }
 
     public void addStimulus(CDTStimulus newStimulus){
@@ -44,6 +49,7 @@ public class CDTStimulusCache {
             return;
         }
         stimulusPool.put(newStimulus.getStimulusID(), newStimulus);
+        stimulusAddedInstantMap.put(newStimulus.getStimulusID(), System.currentTimeMillis());
         if(newStimulus.getOriginalUoW() != null){
             addStimulusAssociation2UoW(newStimulus.getStimulusID(), newStimulus.getOriginalUoW());
         }
@@ -58,6 +64,40 @@ public class CDTStimulusCache {
             removeStimulusAssociation2UoW(stimulusToRemove,workingStimulus.getOriginalUoW());
             stimulusPool.remove(stimulusToRemove);
         }
+        stimulusAddedInstantMap.remove(stimulusToRemove);
+    }
+
+    /**
+     * @return The Stimulus added before the cutoff (milliseconds since the epoch)
+     */
+    public List<CDTStimulusIdentifier> getStimulusAddedBefore(long cutoffMillis){
+        List<CDTStimulusIdentifier> stimulusList = new ArrayList<>();
+        for(Map.Entry<CDTStimulusIdentifier, Long> currentEntry: stimulusAddedInstantMap.entrySet()){
+            if(currentEntry.getValue() < cutoffMillis){
+                stimulusList.add(currentEntry.getKey());
+            }
+        }
+        return(stimulusList);
+    }
+
+    /**
+     * @return The (up to) count oldest Stimulus (by added instant), oldest first
+     */
+    public List<CDTStimulusIdentifier> getOldestStimulus(int count){
+        List<Map.Entry<CDTStimulusIdentifier, Long>> entryList = new ArrayList<>(stimulusAddedInstantMap.entrySet());
+        entryList.sort(Map.Entry.comparingByValue());
+        List<CDTStimulusIdentifier> stimulusList = new ArrayList<>();
+        for(Map.Entry<CDTStimulusIdentifier, Long> currentEntry: entryList){
+            if(stimulusList.size() >= count){
+                break;
+            }
+            stimulusList.add(currentEntry.getKey());
+        }
+        return(stimulusList);
+    }
+
+    public int getStimulusCount(){
+        return(stimulusPool.size());
     }
 
     public CDTStimulus getStimulus(CDTStimulusIdentifier stimulusId){
@@ -71,11 +111,7 @@ public class CDTStimulusCache {
         if(stimulusId == null || uowId == null){
             return;
         }
-        if(!uow2StimulusMap.containsKey(uowId)){
-            HashSet<CDTStimulusIdentifier> idSet = new HashSet<CDTStimulusIdentifier>();
-            uow2StimulusMap.put(uowId, idSet);
-        }
-        uow2StimulusMap.get(uowId).add(stimulusId);
+        uow2StimulusMap.computeIfAbsent(uowId, key -> ConcurrentHashMap.newKeySet()).add(stimulusId);
     }
 
     public Set<CDTStimulusIdentifier> getStimulusAssociatedWithUoW(UoWIdentifier uowId){
@@ -95,13 +131,13 @@ public class CDTStimulusCache {
         if(!uow2StimulusMap.containsKey(uowId)){
             return;
         }
-        Set<CDTStimulusIdentifier> uowStimulus = uow2StimulusMap.get(uowId);
-        if(uowStimulus.contains(stimulusId)){
+        uow2StimulusMap.computeIfPresent(uowId, (key, uowStimulus) -> {
             uowStimulus.remove(stimulusId);
-        }
-        if(uowStimulus.isEmpty()){
-            uow2StimulusMap.remove(uowId);
-        }
+            if(uowStimulus.isEmpty()){
+                return(null);
+            }
+            return(uowStimulus);
+        });
     }
 
 }
@@ -0,0 +1,312 @@
+/*
+ * Copyright (c) 2021 Mark Hunter
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.fhirfactory.pegacorn.communicate.iris.datagrid.twinpathway.orchestrator.common.caches;
+
+import net.fhirfactory.pegacorn.internals.communicate.entities.common.valuesets.CommunicateResourceTypeEnum;
+import net.fhirfactory.pegacorn.internals.communicate.workflow.model.CDTIdentifier;
+import net.fhirfactory.pegacorn.internals.communicate.workflow.model.behaviours.CDTBehaviourIdentifier;
+import net.fhirfactory.pegacorn.internals.communicate.workflow.model.stimulus.CDTStimulusIdentifier;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Routes a Stimulus to only those Behaviours whose inclusion filters care about its CommunicateResourceTypeEnum.
+ * Behaviours registered with a set of resource types are only offered Stimulus of those types; behaviours
+ * registered without one (the historic registration method) are offered every Stimulus. The candidate list per
+ * resource type is pre-compiled (in registration order) whenever a registration changes, so routing a
+ * Stimulus is a single map lookup.
+ *
+ * It also (optionally) caches the derived Stimulus -> (Behaviour, Twin) fan-out per CDTStimulusIdentifier, and
+ * keeps per-behaviour filter evaluation counts/timings.
+ */
+public class CDTStimulusRoutingIndex {
+    private static final int MAXIMUM_CACHED_FAN_OUTS = 10000;
+
+    private ConcurrentHashMap<CDTBehaviourIdentifier, Long> behaviourRegistrationOrder;
+    private ConcurrentHashMap<CDTBehaviourIdentifier, Set<CommunicateResourceTypeEnum>> behaviour2StimulusTypeMap;
+    private volatile Map<CommunicateResourceTypeEnum, List<CDTBehaviourIdentifier>> stimulusType2BehaviourMap;
+    private volatile List<CDTBehaviourIdentifier> wildcardBehaviours;
+    private AtomicLong registrationSequence;
+    private ConcurrentHashMap<CDTStimulusIdentifier, CachedFanOut> fanOutCache;
+    private ConcurrentHashMap<CDTBehaviourIdentifier, FilterEvaluationStatistics> filterStatistics;
+    private AtomicLong fanOutCacheHits;
+    private AtomicLong fanOutCacheMisses;
+
+    public CDTStimulusRoutingIndex(){
+        this.behaviourRegistrationOrder = new ConcurrentHashMap<>();
+        this.behaviour2StimulusTypeMap = new ConcurrentHashMap<>();
+        this.stimulusType2BehaviourMap = new HashMap<>();
+        this.wildcardBehaviours = new ArrayList<>();
+        this.registrationSequence = new AtomicLong(0);
+        this.fanOutCache = new ConcurrentHashMap<>();
+        this.filterStatistics = new ConcurrentHashMap<>();
+        this.fanOutCacheHits = new AtomicLong(0);
+        this.fanOutCacheMisses = new AtomicLong(0);
+    }
+
+    //
+    // Registration
+    //
+
+    /**
+     * Registers (or re-registers) a Behaviour's interest.
+     *
+     * @param behaviourId The Behaviour
+     * @param stimulusTypes The resource types the Behaviour's inclusion filter cares about (null or empty means all)
+     */
+    public synchronized void registerBehaviour(CDTBehaviourIdentifier behaviourId, Set<CommunicateResourceTypeEnum> stimulusTypes){
+        if(behaviourId == null){
+            return;
+        }
+        behaviourRegistrationOrder.putIfAbsent(behaviourId, registrationSequence.incrementAndGet());
+        if(stimulusTypes == null || stimulusTypes.isEmpty()){
+            behaviour2StimulusTypeMap.remove(behaviourId);
+        } else {
+            behaviour2StimulusTypeMap.put(behaviourId, Collections.unmodifiableSet(new HashSet<>(stimulusTypes)));
+        }
+        rebuildRoutingTable();
+        invalidateFanOutCache();
+    }
+
+    /**
+     * Pre-compiles the per-resource-type candidate lists (each in registration order), which are then
+     * published (as immutable lists) for lock-free reading.
+     */
+    private void rebuildRoutingTable(){
+        Comparator<CDTBehaviourIdentifier> registrationOrder = Comparator.comparing(behaviourRegistrationOrder::get);
+        List<CDTBehaviourIdentifier> newWildcardBehaviours = new ArrayList<>();
+        EnumMap<CommunicateResourceTypeEnum, List<CDTBehaviourIdentifier>> newTypeMap = new EnumMap<>(CommunicateResourceTypeEnum.class);
+        List<CDTBehaviourIdentifier> allBehaviours = new ArrayList<>(behaviourRegistrationOrder.keySet());
+        allBehaviours.sort(registrationOrder);
+        for(CDTBehaviourIdentifier currentBehaviour: allBehaviours){
+            if(!behaviour2StimulusTypeMap.containsKey(currentBehaviour)){
+                newWildcardBehaviours.add(currentBehaviour);
+            }
+        }
+        for(CommunicateResourceTypeEnum currentType: CommunicateResourceTypeEnum.values()){
+            List<CDTBehaviourIdentifier> candidates = new ArrayList<>();
+            for(CDTBehaviourIdentifier currentBehaviour: allBehaviours){
+                Set<CommunicateResourceTypeEnum> behaviourTypes = behaviour2StimulusTypeMap.get(currentBehaviour);
+                if(behaviourTypes == null || behaviourTypes.contains(currentType)){
+                    candidates.add(currentBehaviour);
+                }
+            }
+            newTypeMap.put(currentType, Collections.unmodifiableList(candidates));
+        }
+        this.wildcardBehaviours = Collections.unmodifiableList(newWildcardBehaviours);
+        this.stimulusType2BehaviourMap = newTypeMap;
+    }
+
+    /**
+     * @param stimulusType The resource type of the Stimulus (null if unknown)
+     * @return The Behaviours (in registration order) whose filters should be evaluated for the Stimulus
+     */
+    public List<CDTBehaviourIdentifier> getCandidateBehaviours(CommunicateResourceTypeEnum stimulusType){
+        if(stimulusType == null){
+            // Only the behaviours that accept any type can be sure to want a Stimulus of unknown type
+            return(wildcardBehaviours);
+        }
+        List<CDTBehaviourIdentifier> candidates = stimulusType2BehaviourMap.get(stimulusType);
+        if(candidates == null){
+            return(wildcardBehaviours);
+        }
+        return(candidates);
+    }
+
+    //
+    // Fan-Out Cache
+    //
+
+    /**
+     * @return The cached fan-out for the Stimulus (if present and younger than timeToLiveMillis), else null
+     */
+    public List<CDTStimulusFanOutTarget> getCachedFanOut(CDTStimulusIdentifier stimulusId, long timeToLiveMillis){
+        if(stimulusId == null || timeToLiveMillis <= 0){
+            return(null);
+        }
+        CachedFanOut cachedFanOut = fanOutCache.get(stimulusId);
+        if(cachedFanOut == null){
+            fanOutCacheMisses.incrementAndGet();
+            return(null);
+        }
+        if(System.currentTimeMillis() - cachedFanOut.getCreationInstant() > timeToLiveMillis){
+            fanOutCache.remove(stimulusId, cachedFanOut);
+            fanOutCacheMisses.incrementAndGet();
+            return(null);
+        }
+        fanOutCacheHits.incrementAndGet();
+        return(cachedFanOut.getTargets());
+    }
+
+    public void cacheFanOut(CDTStimulusIdentifier stimulusId, List<CDTStimulusFanOutTarget> targets){
+        if(stimulusId == null || targets == null){
+            return;
+        }
+        if(fanOutCache.size() >= MAXIMUM_CACHED_FAN_OUTS){
+            // Crude, but bounded - the cache is short-lived (TTL) anyway
+            fanOutCache.clear();
+        }
+        fanOutCache.put(stimulusId, new CachedFanOut(Collections.unmodifiableList(new ArrayList<>(targets))));
+    }
+
+    /**
+     * Must be called whenever any inclusion/exclusion filter is (re)registered.
+     */
+    public void invalidateFanOutCache(){
+        fanOutCache.clear();
+    }
+
+    public long getFanOutCacheHits(){
+        return(fanOutCacheHits.get());
+    }
+
+    public long getFanOutCacheMisses(){
+        return(fanOutCacheMisses.get());
+    }
+
+    //
+    // Filter Evaluation Statistics
+    //
+
+    public void recordFilterEvaluation(CDTBehaviourIdentifier behaviourId, long elapsedNanos){
+        if(behaviourId == null){
+            return;
+        }
+        filterStatistics.computeIfAbsent(behaviourId, key -> new FilterEvaluationStatistics()).record(elapsedNanos);
+    }
+
+    public FilterEvaluationStatistics getFilterEvaluationStatistics(CDTBehaviourIdentifier behaviourId){
+        if(behaviourId == null){
+            return(null);
+        }
+        return(filterStatistics.get(behaviourId));
+    }
+
+    public Map<CDTBehaviourIdentifier, FilterEvaluationStatistics> getAllFilterEvaluationStatistics(){
+        return(Collections.unmodifiableMap(filterStatistics));
+    }
+
+    //
+    // Supporting Classes
+    //
+
+    /**
+     * A single (Behaviour, DigitalTwin) destination for a Stimulus.
+     */
+    public static final class CDTStimulusFanOutTarget {
+        private final CDTBehaviourIdentifier behaviourId;
+        private final CDTIdentifier twinId;
+
+        public CDTStimulusFanOutTarget(CDTBehaviourIdentifier behaviourId, CDTIdentifier twinId){
+            this.behaviourId = behaviourId;
+            this.twinId = twinId;
+        }
+
+        public CDTBehaviourIdentifier getBehaviourId() {
+            return behaviourId;
+        }
+
+        public CDTIdentifier getTwinId() {
+            return twinId;
+        }
+    }
+
+    /**
+     * Evaluation count and total/maximum elapsed time (nanoseconds) of one Behaviour's filters.
+     */
+    public static final class FilterEvaluationStatistics {
+        private final LongAdder evaluationCount;
+        private final LongAdder totalEvaluationNanos;
+        private final LongAccumulator maximumEvaluationNanos;
+
+        private FilterEvaluationStatistics(){
+            this.evaluationCount = new LongAdder();
+            this.totalEvaluationNanos = new LongAdder();
+            this.maximumEvaluationNanos = new LongAccumulator(Long::max, 0L);
+        }
+
+        private void record(long elapsedNanos){
+            evaluationCount.increment();
+            totalEvaluationNanos.add(elapsedNanos);
+            maximumEvaluationNanos.accumulate(elapsedNanos);
+        }
+
+        public long getEvaluationCount(){
+            return(evaluationCount.sum());
+        }
+
+        public long getTotalEvaluationNanos(){
+            return(totalEvaluationNanos.sum());
+        }
+
+        public long getMaximumEvaluationNanos(){
+            return(maximumEvaluationNanos.get());
+        }
+
+        public long getAverageEvaluationNanos(){
+            long count = evaluationCount.sum();
+            if(count == 0){
+                return(0);
+            }
+            return(totalEvaluationNanos.sum() / count);
+        }
+
+        @Override
+        public String toString() {
+            return "FilterEvaluationStatistics{" +
+                    "evaluationCount=" + getEvaluationCount() +
+                    ", averageEvaluationNanos=" + getAverageEvaluationNanos() +
+                    ", maximumEvaluationNanos=" + getMaximumEvaluationNanos() +
+                    '}';
+        }
+    }
+
+    private static final class CachedFanOut {
+        private final List<CDTStimulusFanOutTarget> targets;
+        private final long creationInstant;
+
+        private CachedFanOut(List<CDTStimulusFanOutTarget> targets){
+            this.targets = targets;
+            this.creationInstant = System.currentTimeMillis();
+        }
+
+        private List<CDTStimulusFanOutTarget> getTargets() {
+            return targets;
+        }
+
+        private long getCreationInstant() {
+            return creationInstant;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright (c) 2021 Mark Hunter
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.fhirfactory.pegacorn.communicate.iris.datagrid.twinpathway.orchestrator.common.caches;
+
+import net.fhirfactory.pegacorn.core.model.petasos.uow.UoWIdentifier;
+import net.fhirfactory.pegacorn.internals.communicate.workflow.model.CDTIdentifier;
+import net.fhirfactory.pegacorn.internals.communicate.workflow.model.behaviours.CDTBehaviourIdentifier;
+import net.fhirfactory.pegacorn.internals.communicate.workflow.model.stimulus.CDTStimulusIdentifier;
+import net.fhirfactory.pegacorn.internals.communicate.workflow.model.stimulus.CDTStimulusPackage;
+
+import java.util.Objects;
+
+/**
+ * The (time-limited) claim a Behaviour holds on a DigitalTwin while it processes a StimulusPackage. Leases are
+ * immutable - a redelivery of the same StimulusPackage is made under a new lease (with the next deliveryAttempt),
+ * so a busy-status map entry can always be conditionally replaced/removed against the exact lease it holds.
+ */
+public class CDTTwinLease {
+    private final CDTIdentifier twinId;
+    private final CDTBehaviourIdentifier behaviourId;
+    private final CDTStimulusIdentifier stimulusId;
+    private final UoWIdentifier uowId;
+    private final CDTStimulusPackage stimulusPackage;
+    private final int deliveryAttempt;
+    private final long leaseStartNanos;
+    private final long leaseExpiryMillis;
+
+    /**
+     * @param twinId The leased DigitalTwin
+     * @param behaviourId The Behaviour holding the lease
+     * @param stimulusId The Stimulus being processed (null if the twin was locked directly)
+     * @param uowId The UoW the Stimulus was derived from (null if the twin was locked directly)
+     * @param stimulusPackage The StimulusPackage being processed (null if the twin was locked directly)
+     * @param deliveryAttempt 1 for the first delivery of the StimulusPackage, 2 for the first redelivery, etc.
+     * @param leaseTimeoutMillis How long the lease is held for (0 means forever)
+     */
+    public CDTTwinLease(CDTIdentifier twinId, CDTBehaviourIdentifier behaviourId, CDTStimulusIdentifier stimulusId, UoWIdentifier uowId, CDTStimulusPackage stimulusPackage, int deliveryAttempt, long leaseTimeoutMillis){
+        this.twinId = twinId;
+        this.behaviourId = behaviourId;
+        this.stimulusId = stimulusId;
+        this.uowId = uowId;
+        this.stimulusPackage = stimulusPackage;
+        this.deliveryAttempt = deliveryAttempt;
+        this.leaseStartNanos = System.nanoTime();
+        if(leaseTimeoutMillis > 0){
+            this.leaseExpiryMillis = System.currentTimeMillis() + leaseTimeoutMillis;
+        } else {
+            this.leaseExpiryMillis = Long.MAX_VALUE;
+        }
+    }
+
+    /**
+     * @return A new lease, for the redelivery of this lease's StimulusPackage
+     */
+    public CDTTwinLease newRedeliveryLease(long leaseTimeoutMillis){
+        return(new CDTTwinLease(twinId, behaviourId, stimulusId, uowId, stimulusPackage, deliveryAttempt + 1, leaseTimeoutMillis));
+    }
+
+    public boolean isExpired(long currentTimeMillis){
+        return(currentTimeMillis >= leaseExpiryMillis);
+    }
+
+    /**
+     * @return true if the lease is held by the Behaviour for the Stimulus (a lease taken directly, without a
+     * Stimulus, is matched by Behaviour alone)
+     */
+    public boolean isHeldFor(CDTBehaviourIdentifier behaviourId, CDTStimulusIdentifier stimulusId){
+        if(this.behaviourId != null && !this.behaviourId.equals(behaviourId)){
+            return(false);
+        }
+        if(this.stimulusId == null){
+            return(true);
+        }
+        return(Objects.equals(this.stimulusId, stimulusId));
+    }
+
+    public long getElapsedNanos(){
+        return(System.nanoTime() - leaseStartNanos);
+    }
+
+    public CDTIdentifier getTwinId() {
+        return twinId;
+    }
+
+    public CDTBehaviourIdentifier getBehaviourId() {
+        return behaviourId;
+    }
+
+    public CDTStimulusIdentifier getStimulusId() {
+        return stimulusId;
+    }
+
+    public UoWIdentifier getUoWId() {
+        return uowId;
+    }
+
+    public CDTStimulusPackage getStimulusPackage() {
+        return stimulusPackage;
+    }
+
+    public int getDeliveryAttempt() {
+        return deliveryAttempt;
+    }
+
+    public long getLeaseExpiryMillis() {
+        return leaseExpiryMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "CDTTwinLease{" +
+                "twinId=" + twinId +
+                ", behaviourId=" + behaviourId +
+                ", stimulusId=" + stimulusId +
+                ", uowId=" + uowId +
+                ", deliveryAttempt=" + deliveryAttempt +
+                ", leaseExpiryMillis=" + leaseExpiryMillis +
+                '}';
+    }
+}
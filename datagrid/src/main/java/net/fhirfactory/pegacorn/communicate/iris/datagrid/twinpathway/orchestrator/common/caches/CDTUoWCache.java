@@ -24,6 +24,9 @@ package net.fhirfactory.pegacorn.communicate.iris.datagrid.twinpathway.orchestra
 import net.fhirfactory.pegacorn.core.model.petasos.uow.UoW;
 import net.fhirfactory.pegacorn.core.model.petasos.uow.UoWIdentifier;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import net.fhirfactory.pegacorn.core.model.componentid.TopologyNodeFDN;
 
@@ -34,12 +37,14 @@ public class CDTUoWCache {
     private ConcurrentHashMap<UoWIdentifier, WUPJobCard> jobCardPool;
     private ConcurrentHashMap<UoWIdentifier, ParcelStatusElement> statusElementPool;
     private ConcurrentHashMap<UoWIdentifier, TopologyNodeFDN> wupKeyPool;
+    private ConcurrentHashMap<UoWIdentifier, Long> registrationInstantPool;
 
     public CDTUoWCache() {
         this.jobCardPool = new ConcurrentHashMap<>();
         this.uowPool = new ConcurrentHashMap<>();
         this.statusElementPool = new ConcurrentHashMap<>();
         this.wupKeyPool = new ConcurrentHashMap<>();
+        this.registrationInstantPool = new ConcurrentHashMap<>();
     }
 
     public void addUoW(UoW newUoW, WUPJobCard jobCard, ParcelStatusElement statusElement, TopologyNodeFDN wupID) {
@@ -50,6 +55,7 @@ public class CDTUoWCache {
         jobCardPool.put(newUoW.getInstanceID(), jobCard);
         statusElementPool.put(newUoW.getInstanceID(), statusElement);
         wupKeyPool.put(newUoW.getInstanceID(), wupID);
+        registrationInstantPool.put(newUoW.getInstanceID(), System.currentTimeMillis());
     }
 
     public void removeUoW(UoWIdentifier uowToRemove){
@@ -58,9 +64,50 @@ public class CDTUoWCache {
             jobCardPool.remove(uowToRemove);
             statusElementPool.remove(uowToRemove);
             wupKeyPool.remove(uowToRemove);
+            registrationInstantPool.remove(uowToRemove);
         }
     }
 
+    public boolean hasUoW(UoWIdentifier uowId){
+        if(uowId == null){
+            return(false);
+        }
+        return(uowPool.containsKey(uowId));
+    }
+
+    /**
+     * @return The UoWs registered before the cutoff (milliseconds since the epoch)
+     */
+    public List<UoWIdentifier> getUoWsRegisteredBefore(long cutoffMillis){
+        List<UoWIdentifier> uowList = new ArrayList<>();
+        for(Map.Entry<UoWIdentifier, Long> currentEntry: registrationInstantPool.entrySet()){
+            if(currentEntry.getValue() < cutoffMillis){
+                uowList.add(currentEntry.getKey());
+            }
+        }
+        return(uowList);
+    }
+
+    /**
+     * @return The (up to) count oldest UoWs (by registration instant), oldest first
+     */
+    public List<UoWIdentifier> getOldestUoWs(int count){
+        List<Map.Entry<UoWIdentifier, Long>> entryList = new ArrayList<>(registrationInstantPool.entrySet());
+        entryList.sort(Map.Entry.comparingByValue());
+        List<UoWIdentifier> uowList = new ArrayList<>();
+        for(Map.Entry<UoWIdentifier, Long> currentEntry: entryList){
+            if(uowList.size() >= count){
+                break;
+            }
+            uowList.add(currentEntry.getKey());
+        }
+        return(uowList);
+    }
+
+    public int getUoWCount(){
+        return(uowPool.size());
+    }
+
     public UoW getUoW(UoWIdentifier uowId){
         if(uowPool.containsKey(uowId)){
             return(uowPool.get(uowId));
@@ -0,0 +1,242 @@
+/*
+ * Copyright (c) 2021 Mark Hunter
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.fhirfactory.pegacorn.communicate.iris.datagrid.twinpathway.orchestrator.common.caches;
+
+import net.fhirfactory.pegacorn.core.model.petasos.uow.UoWIdentifier;
+import net.fhirfactory.pegacorn.internals.communicate.workflow.model.CDTIdentifier;
+import net.fhirfactory.pegacorn.internals.communicate.workflow.model.behaviours.CDTBehaviourIdentifier;
+import net.fhirfactory.pegacorn.internals.communicate.workflow.model.stimulus.CDTStimulusIdentifier;
+import net.fhirfactory.pegacorn.internals.communicate.workflow.model.stimulus.CDTStimulusPackage;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shards the DigitalTwins (of one type) across a fixed set of worker lanes, each with its own work queues and
+ * busy-status map. A twin is always mapped to the same lane (using a jump consistent hash of its CDTIdentifier),
+ * so its Stimulus ordering and the one-behaviour-at-a-time rule are unaffected, while twins in different lanes
+ * can be dispatched in parallel without contending for the same structures.
+ */
+public class CDTWorkerLanes {
+    private final WorkerLane[] lanes;
+
+    public CDTWorkerLanes(int laneCount){
+        int actualLaneCount = Math.max(1, laneCount);
+        this.lanes = new WorkerLane[actualLaneCount];
+        for(int counter = 0; counter < actualLaneCount; counter++){
+            lanes[counter] = new WorkerLane(counter);
+        }
+    }
+
+    /**
+     * @param twinIdentifier The DigitalTwin
+     * @return The lane the DigitalTwin belongs to
+     */
+    public WorkerLane getLane(CDTIdentifier twinIdentifier){
+        if(lanes.length == 1 || twinIdentifier == null){
+            return(lanes[0]);
+        }
+        return(lanes[jumpConsistentHash(twinIdentifier.hashCode(), lanes.length)]);
+    }
+
+    public WorkerLane getLane(int laneIndex){
+        return(lanes[laneIndex]);
+    }
+
+    public int getLaneCount(){
+        return(lanes.length);
+    }
+
+    public int getTotalStimulusCount(){
+        int total = 0;
+        for(WorkerLane currentLane: lanes){
+            total += currentLane.getWorkQueues().getTotalStimulusCount();
+        }
+        return(total);
+    }
+
+    public int getBusyTwinCount(){
+        int total = 0;
+        for(WorkerLane currentLane: lanes){
+            total += currentLane.getBusyStatus().size();
+        }
+        return(total);
+    }
+
+    /**
+     * Lamping & Veach's "jump" consistent hash - the (well-spread) key is mapped to a bucket in [0, buckets), with
+     * only 1/buckets of the keys moving should the number of buckets change.
+     */
+    static int jumpConsistentHash(int hashCode, int buckets){
+        // Spread the (possibly poorly distributed) 32-bit hashCode across 64 bits first
+        long key = hashCode * 0x9E3779B97F4A7C15L;
+        long bucket = -1;
+        long candidate = 0;
+        while(candidate < buckets){
+            bucket = candidate;
+            key = key * 2862933555777941757L + 1;
+            candidate = (long)((bucket + 1) * ((double)(1L << 31) / (double)((key >>> 33) + 1)));
+        }
+        return((int)bucket);
+    }
+
+    /**
+     * A single lane: the work queues, busy status (leases) and pending redeliveries of the DigitalTwins hashed to it.
+     */
+    public static final class WorkerLane {
+        private final int laneIndex;
+        private final CDTInstanceWorkQueues workQueues;
+        private final ConcurrentHashMap<CDTIdentifier, CDTTwinLease> busyStatus;
+        private final ConcurrentHashMap<CDTIdentifier, CDTTwinLease> pendingRedeliveries;
+        private final ConcurrentHashMap<CDTStimulusPackage, QueuedStimulusContext> queuedStimulusContexts;
+
+        private WorkerLane(int laneIndex){
+            this.laneIndex = laneIndex;
+            this.workQueues = new CDTInstanceWorkQueues();
+            this.busyStatus = new ConcurrentHashMap<>();
+            this.pendingRedeliveries = new ConcurrentHashMap<>();
+            this.queuedStimulusContexts = new ConcurrentHashMap<>();
+        }
+
+        /**
+         * Queues the StimulusPackage for the twin, remembering which Stimulus/UoW it carries (so that a lease
+         * can be taken out against them when it is dispatched).
+         */
+        public void queueStimulusPackage(CDTIdentifier twinId, CDTStimulusPackage stimulusPackage, CDTStimulusIdentifier stimulusId, UoWIdentifier uowId){
+            queuedStimulusContexts.put(stimulusPackage, new QueuedStimulusContext(stimulusId, uowId));
+            workQueues.addStimulus2Queue(twinId, stimulusPackage);
+        }
+
+        /**
+         * Takes the next StimulusPackage for the twin - a pending redelivery (which keeps its place at the front
+         * of the twin's queue) first, else the head of its work queue - as a new lease.
+         *
+         * @return The new lease, or null if there is nothing for the twin to do
+         */
+        public CDTTwinLease takeNextLease(CDTIdentifier twinId, long leaseTimeoutMillis){
+            CDTTwinLease expiredLease = pendingRedeliveries.remove(twinId);
+            if(expiredLease != null){
+                return(expiredLease.newRedeliveryLease(leaseTimeoutMillis));
+            }
+            CDTStimulusPackage stimulusPackage = workQueues.getNextStimulusPackage(twinId);
+            if(stimulusPackage == null){
+                return(null);
+            }
+            QueuedStimulusContext context = queuedStimulusContexts.remove(stimulusPackage);
+            CDTStimulusIdentifier stimulusId = null;
+            UoWIdentifier uowId = null;
+            if(context != null){
+                stimulusId = context.getStimulusId();
+                uowId = context.getUoWId();
+            }
+            return(new CDTTwinLease(twinId, stimulusPackage.getTargetBehaviour(), stimulusId, uowId, stimulusPackage, 1, leaseTimeoutMillis));
+        }
+
+        /**
+         * Releases the twin from the (expired) lease, optionally scheduling the lease's StimulusPackage for
+         * redelivery. Both happen atomically with respect to dispatch, so no other StimulusPackage can be
+         * dispatched to the twin ahead of the redelivery.
+         *
+         * @return true if the lease was still current (and so has been expired), false if it had already been released
+         */
+        public boolean expireLease(CDTTwinLease expiredLease, boolean scheduleRedelivery){
+            boolean[] leaseExpired = new boolean[1];
+            busyStatus.computeIfPresent(expiredLease.getTwinId(), (twin, currentLease) -> {
+                if(currentLease != expiredLease){
+                    return(currentLease);
+                }
+                if(scheduleRedelivery && expiredLease.getStimulusPackage() != null){
+                    pendingRedeliveries.put(twin, expiredLease);
+                }
+                leaseExpired[0] = true;
+                return(null);
+            });
+            return(leaseExpired[0]);
+        }
+
+        /**
+         * @return true if the lease was still current (and so has been released)
+         */
+        public boolean releaseLease(CDTTwinLease lease){
+            return(busyStatus.remove(lease.getTwinId(), lease));
+        }
+
+        /**
+         * Cancels the pending redelivery for the twin, if it is for the given Behaviour and Stimulus (i.e. a late
+         * completion of the expired delivery arrived before the redelivery was made).
+         */
+        public boolean cancelRedelivery(CDTIdentifier twinId, CDTBehaviourIdentifier behaviourId, CDTStimulusIdentifier stimulusId){
+            CDTTwinLease pendingRedelivery = pendingRedeliveries.get(twinId);
+            if(pendingRedelivery == null || !pendingRedelivery.isHeldFor(behaviourId, stimulusId)){
+                return(false);
+            }
+            return(pendingRedeliveries.remove(twinId, pendingRedelivery));
+        }
+
+        /**
+         * @return The twins with queued work or a pending redelivery
+         */
+        public Set<CDTIdentifier> getTwinsWithPendingWork(){
+            Set<CDTIdentifier> twinIdSet = workQueues.getTwinsWithQueuedWork();
+            if(!pendingRedeliveries.isEmpty()){
+                twinIdSet = new HashSet<>(twinIdSet);
+                twinIdSet.addAll(pendingRedeliveries.keySet());
+            }
+            return(twinIdSet);
+        }
+
+        public int getLaneIndex() {
+            return laneIndex;
+        }
+
+        public CDTInstanceWorkQueues getWorkQueues() {
+            return workQueues;
+        }
+
+        public ConcurrentHashMap<CDTIdentifier, CDTTwinLease> getBusyStatus() {
+            return busyStatus;
+        }
+
+        public int getPendingRedeliveryCount(){
+            return(pendingRedeliveries.size());
+        }
+    }
+
+    private static final class QueuedStimulusContext {
+        private final CDTStimulusIdentifier stimulusId;
+        private final UoWIdentifier uowId;
+
+        private QueuedStimulusContext(CDTStimulusIdentifier stimulusId, UoWIdentifier uowId){
+            this.stimulusId = stimulusId;
+            this.uowId = uowId;
+        }
+
+        private CDTStimulusIdentifier getStimulusId() {
+            return stimulusId;
+        }
+
+        private UoWIdentifier getUoWId() {
+            return uowId;
+        }
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2021 Mark Hunter
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package net.fhirfactory.pegacorn.communicate.iris.datagrid.twinpathway.orchestrator.common;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import net.fhirfactory.pegacorn.communicate.iris.datagrid.twinpathway.encapsulatorroutes.common.beans.CommunicateResourceReaderRegistry;
+import net.fhirfactory.pegacorn.internals.communicate.entities.common.valuesets.CommunicateResourceTypeEnum;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Base64;
+
+/**
+ * Standalone (main()) benchmark of the intra-subsystem payload encodings (CDTPayloadEncodingEnum) - JSON vs
+ * Smile+Base64 vs CBOR+Base64 - reporting, per UoW (i.e. per resource), the payload size and the CPU time to
+ * encode it (as CDTOrchestratorBase.encodeIntraSubsystemPayload() does) and to decode it again (Base64 decode
+ * then the CommunicateResourceReaderRegistry reader, as UoW2StimulusListBean does).
+ *
+ * It is not a unit test (and so is not picked up by surefire), run it against a captured (JSON) resource:
+ *
+ *     java ... CDTPayloadEncodingBenchmark COMMUNICATE_PRACTITIONER practitioner.json [iterations]
+ *
+ * The binary encodings only pay off if their (Base64 inflated, ~4/3) payload is smaller than the JSON one and
+ * the saving isn't eaten by the extra Base64 pass - so check both columns before moving off JSON.
+ */
+public class CDTPayloadEncodingBenchmark {
+
+    static final int DEFAULT_ITERATIONS = 100000; // Measured iterations (per encoding)
+    static final int WARMUP_ITERATIONS = 20000; // Iterations run (per encoding) before measuring, so the JIT has settled
+
+    private CommunicateResourceReaderRegistry readerRegistry;
+    private ThreadMXBean threadMXBean;
+    private long sink;
+
+    public CDTPayloadEncodingBenchmark(){
+        this.readerRegistry = new CommunicateResourceReaderRegistry();
+        this.readerRegistry.initialiseService();
+        this.threadMXBean = ManagementFactory.getThreadMXBean();
+        this.sink = 0;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if(args.length < 2){
+            System.err.println("Usage: CDTPayloadEncodingBenchmark <CommunicateResourceTypeEnum> <resource json file> [iterations]");
+            System.exit(1);
+        }
+        CommunicateResourceTypeEnum resourceType = CommunicateResourceTypeEnum.valueOf(args[0]);
+        String resourceJson = new String(Files.readAllBytes(Paths.get(args[1])), StandardCharsets.UTF_8);
+        int iterations = DEFAULT_ITERATIONS;
+        if(args.length > 2){
+            iterations = Integer.parseInt(args[2]);
+        }
+        CDTPayloadEncodingBenchmark benchmark = new CDTPayloadEncodingBenchmark();
+        benchmark.run(resourceType, resourceJson, iterations);
+    }
+
+    public void run(CommunicateResourceTypeEnum resourceType, String resourceJson, int iterations) throws IOException {
+        Object resource = readerRegistry.getJsonReader(resourceType).readValue(resourceJson);
+        if(resource == null){
+            throw(new IllegalArgumentException("No reader registered for resource type " + resourceType));
+        }
+        System.out.printf("resourceType=%s, iterations=%d, cpuTimeSupported=%s%n", resourceType, iterations, threadMXBean.isCurrentThreadCpuTimeSupported());
+        System.out.printf("%-24s %12s %14s %16s %16s %16s%n", "encoding", "rawBytes", "payloadChars", "encodeCpu(ns)", "decodeCpu(ns)", "totalCpu(ns)");
+        for(CDTPayloadEncodingEnum currentEncoding: CDTPayloadEncodingEnum.values()){
+            ObjectWriter writer = buildPayloadWriter(currentEncoding);
+            ObjectReader reader = readerRegistry.getReader(resourceType, currentEncoding);
+            byte[] rawBytes = writer.writeValueAsBytes(resource);
+            String payload = encode(writer, currentEncoding, resource);
+            // Make sure the round trip actually works before timing it
+            decode(reader, currentEncoding, payload);
+
+            measureEncode(writer, currentEncoding, resource, WARMUP_ITERATIONS);
+            measureDecode(reader, currentEncoding, payload, WARMUP_ITERATIONS);
+            long encodeCpu = measureEncode(writer, currentEncoding, resource, iterations);
+            long decodeCpu = measureDecode(reader, currentEncoding, payload, iterations);
+            System.out.printf("%-24s %12d %14d %16d %16d %16d%n", currentEncoding, rawBytes.length, payload.length(), encodeCpu, decodeCpu, encodeCpu + decodeCpu);
+        }
+        // Printed so the measured work can't be optimised away
+        System.out.printf("(sink=%d)%n", sink);
+    }
+
+    //
+    // Encode / Decode (mirroring CDTOrchestratorBase / UoW2StimulusListBean)
+    //
+
+    private ObjectWriter buildPayloadWriter(CDTPayloadEncodingEnum encoding){
+        ObjectMapper encodingMapper;
+        switch(encoding){
+            case PAYLOAD_ENCODING_SMILE:
+                encodingMapper = new ObjectMapper(new SmileFactory());
+                break;
+            case PAYLOAD_ENCODING_CBOR:
+                encodingMapper = new ObjectMapper(new CBORFactory());
+                break;
+            case PAYLOAD_ENCODING_JSON:
+            default:
+                encodingMapper = new ObjectMapper();
+                encodingMapper.registerModule(new JavaTimeModule());
+                return(encodingMapper.writer().without(SerializationFeature.INDENT_OUTPUT));
+        }
+        encodingMapper.registerModule(new JavaTimeModule());
+        return(encodingMapper.writer());
+    }
+
+    private String encode(ObjectWriter writer, CDTPayloadEncodingEnum encoding, Object resource) throws IOException {
+        if(encoding.isBinary()){
+            return(Base64.getEncoder().encodeToString(writer.writeValueAsBytes(resource)));
+        }
+        return(writer.writeValueAsString(resource));
+    }
+
+    private Object decode(ObjectReader reader, CDTPayloadEncodingEnum encoding, String payload) throws IOException {
+        if(encoding.isBinary()){
+            return(reader.readValue(Base64.getDecoder().decode(payload)));
+        }
+        return(reader.readValue(payload));
+    }
+
+    //
+    // Measurement
+    //
+
+    /**
+     * @return The mean (thread) CPU time, in nanoseconds, to encode the resource once
+     */
+    private long measureEncode(ObjectWriter writer, CDTPayloadEncodingEnum encoding, Object resource, int iterations) throws IOException {
+        long startTime = currentThreadCpuTime();
+        for(int iteration = 0; iteration < iterations; iteration++){
+            sink += encode(writer, encoding, resource).length();
+        }
+        return((currentThreadCpuTime() - startTime) / iterations);
+    }
+
+    /**
+     * @return The mean (thread) CPU time, in nanoseconds, to decode the payload once
+     */
+    private long measureDecode(ObjectReader reader, CDTPayloadEncodingEnum encoding, String payload, int iterations) throws IOException {
+        long startTime = currentThreadCpuTime();
+        for(int iteration = 0; iteration < iterations; iteration++){
+            sink += System.identityHashCode(decode(reader, encoding, payload));
+        }
+        return((currentThreadCpuTime() - startTime) / iterations);
+    }
+
+    private long currentThreadCpuTime(){
+        if(threadMXBean.isCurrentThreadCpuTimeSupported()){
+            return(threadMXBean.getCurrentThreadCpuTime());
+        }
+        return(System.nanoTime());
+    }
+}